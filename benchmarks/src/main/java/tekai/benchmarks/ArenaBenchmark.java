@@ -0,0 +1,76 @@
+package tekai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.ExpressionArena;
+import tekai.Parser;
+import tekai.sql.ParserTest;
+
+/**
+ * Packing a parsed tree with {@link ExpressionArena#of(CharSequence, Expression)}, and
+ * counting the nodes of a type in an arena against in a tree. Run with
+ * {@code -prof gc} to compare what they allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArenaBenchmark {
+
+    @Param({"medium", "long"})
+    public String size;
+
+    private String source;
+    private Expression tree;
+    private ExpressionArena arena;
+
+    @Setup
+    public void setUp() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        source = Statements.of(size);
+        tree = parser.parse(source);
+        arena = ExpressionArena.of(source, tree);
+    }
+
+    @Benchmark
+    public ExpressionArena pack() {
+        return ExpressionArena.of(source, tree);
+    }
+
+    @Benchmark
+    public int countInTree() {
+        return count(tree, "IDENTIFIER");
+    }
+
+    @Benchmark
+    public int countInArena() {
+        int result = 0;
+        int identifier = arena.typeId("IDENTIFIER");
+        for (int node = 0; node < arena.size(); node++)
+            if (arena.typeOf(node) == identifier) result++;
+        return result;
+    }
+
+    private static int count(Expression expression, String type) {
+        int result = expression.isType(type) ? 1 : 0;
+        for (int i = 0; i < expression.getChildCount(); i++)
+            result += count(expression.getChild(i), type);
+        return result;
+    }
+}
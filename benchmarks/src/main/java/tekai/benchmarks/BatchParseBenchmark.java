@@ -0,0 +1,67 @@
+package tekai.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Grammar;
+import tekai.ParseResult;
+import tekai.Parser;
+import tekai.sql.ParserTest;
+
+/**
+ * {@link Grammar#parseAll(Iterable, java.util.concurrent.ExecutorService)} of 10000
+ * medium statements, with a growing number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchParseBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Grammar grammar;
+    private List<String> sources;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        grammar = parser.freeze();
+
+        sources = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++)
+            sources.add(Statements.MEDIUM);
+
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<ParseResult> parseAll() {
+        return grammar.parseAll(sources, pool);
+    }
+}
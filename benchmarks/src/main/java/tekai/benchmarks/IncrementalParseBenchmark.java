@@ -0,0 +1,56 @@
+package tekai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.IncrementalParser;
+import tekai.Parser;
+import tekai.sql.ParserTest;
+
+/**
+ * A keystroke (typed and then deleted) in the middle of the long statement, parsed
+ * again incrementally and in full.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalParseBenchmark {
+
+    private Parser parser;
+    private IncrementalParser incremental;
+    private int offset;
+
+    @Setup
+    public void setUp() {
+        parser = new Parser();
+        ParserTest.configureParser(parser);
+        incremental = new IncrementalParser(parser, Statements.LONG);
+        offset = Statements.LONG.indexOf("descricao, 20)") + "descricao, 2".length();
+    }
+
+    @Benchmark
+    public Expression keystroke() {
+        incremental.edit(offset, 0, "5");
+        return incremental.edit(offset, 1, "");
+    }
+
+    @Benchmark
+    public Expression fullParse() {
+        parser.parse(Statements.LONG);
+        return parser.parse(Statements.LONG);
+    }
+}
@@ -0,0 +1,76 @@
+package tekai.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.Parser;
+import tekai.javaexpansions.MappedCharSequence;
+import tekai.sql.ParserTest;
+
+/**
+ * {@link Parser#parse(CharSequence)} of a statement in a String against the same
+ * statement read from a mapped file, with texts that aren't ASCII.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedParseBenchmark {
+
+    @Param({"medium", "long"})
+    public String size;
+
+    @Param({"UTF-8", "ISO-8859-1"})
+    public String charset;
+
+    private Parser parser;
+    private String source;
+    private Path file;
+    private MappedCharSequence mapped;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new Parser();
+        ParserTest.configureParser(parser);
+        source = Statements.of(size).replace("texto", "descrição").replace("ACME", "AÇÃO");
+
+        Charset encoding = Charset.forName(charset);
+        file = Files.createTempFile("statement", ".sql");
+        Files.write(file, source.getBytes(encoding));
+        mapped = MappedCharSequence.open(file, encoding);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Expression parseString() {
+        return parser.parse(source);
+    }
+
+    @Benchmark
+    public Expression parseMapped() {
+        return parser.parse(mapped);
+    }
+}
@@ -0,0 +1,49 @@
+package tekai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.Parser;
+import tekai.sql.ParserTest;
+
+/**
+ * {@link Parser#parse(CharSequence)} with the SQL grammar used by the tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"short", "medium", "long"})
+    public String size;
+
+    private Parser parser;
+    private String source;
+
+    @Setup
+    public void setUp() {
+        parser = new Parser();
+        ParserTest.configureParser(parser);
+        source = Statements.of(size);
+    }
+
+    @Benchmark
+    public Expression parse() {
+        return parser.parse(source);
+    }
+}
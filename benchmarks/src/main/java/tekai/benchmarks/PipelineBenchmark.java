@@ -0,0 +1,78 @@
+package tekai.benchmarks;
+
+import static tekai.Expression.e;
+import static tekai.standard.CommonTransformation.from;
+import static tekai.standard.CommonTransformation.fromType;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.Transformation;
+import tekai.standard.TransformationPipeline;
+
+/**
+ * Four transformations applied one traversal each and fused by {@link TransformationPipeline}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private Transformation[] stages;
+    private TransformationPipeline pipeline;
+    private Expression expression;
+
+    @Setup
+    public void setUp() {
+        stages = new Transformation[] {
+            fromType("COMMENT").toNothing(),
+            from("SUBSTRING", "FUNCTION").toValue("SUBSTR"),
+            from("CAST", "FUNCTION").toValue("CONVERT").toParamOrder(2, 1),
+            fromType("DATATYPE").toType("TYPE")
+        };
+
+        pipeline = new TransformationPipeline();
+        for (Transformation stage : stages)
+            pipeline.then(stage);
+        if (!pipeline.isFused()) throw new IllegalStateException(pipeline.getFusionProblem());
+
+        expression = e("campo", "IDENTIFIER");
+        for (int i = 0; i < depth; i++) {
+            if (i % 2 == 0)
+                expression = e("SUBSTRING", "FUNCTION", expression, e(" 0", "NUMBER"), e(" 4", "NUMBER"));
+            else
+                expression = e("CAST", "FUNCTION", expression, e(" VARCHAR2", "DATATYPE"));
+        }
+    }
+
+    @Benchmark
+    public Expression sequential() {
+        Expression result = expression;
+        for (Transformation stage : stages)
+            result = stage.applyOn(result);
+        return result;
+    }
+
+    @Benchmark
+    public Expression fused() {
+        return pipeline.applyOn(expression);
+    }
+}
@@ -0,0 +1,73 @@
+package tekai.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.Parser;
+import tekai.sql.ParserTest;
+import tekai.sql.SqlPrinter;
+
+/**
+ * Printing of parsed SQL with the printer used by the tests, alone (rendering every node or
+ * copying the source of untouched ones) and as a parse + print round-trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintBenchmark {
+
+    @Param({"short", "medium", "long"})
+    public String size;
+
+    private Parser parser;
+    private SqlPrinter printer;
+    private SqlPrinter copyingPrinter;
+    private String source;
+    private Expression expression;
+
+    @Setup
+    public void setUp() {
+        parser = new Parser();
+        ParserTest.configureParser(parser);
+        printer = new SqlPrinter();
+        copyingPrinter = new SqlPrinter();
+        copyingPrinter.setCopyingSource(true);
+        source = Statements.of(size);
+        expression = parser.parse(source);
+
+        if (!source.equals(printer.print(expression)))
+            throw new IllegalStateException("Printed SQL differs from the source: " + size);
+        if (!source.equals(copyingPrinter.print(expression)))
+            throw new IllegalStateException("Copied SQL differs from the source: " + size);
+    }
+
+    @Benchmark
+    public String print() {
+        return printer.print(expression);
+    }
+
+    @Benchmark
+    public String printCopyingSource() {
+        return copyingPrinter.print(expression);
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        return printer.print(parser.parse(source));
+    }
+}
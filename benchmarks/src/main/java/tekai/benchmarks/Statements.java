@@ -0,0 +1,61 @@
+package tekai.benchmarks;
+
+/**
+ * SQL statements of different sizes, all understood by the grammar in {@code tekai.sql.ParserTest}.
+ */
+final class Statements {
+
+    static final String SHORT = "SELECT campo FROM tabela WHERE campo = 2";
+
+    static final String MEDIUM =
+              "SELECT C120.idcomercial, "
+            + "        C120.idnome, "
+            + "        X040.razsoc, "
+            + "        X040.docto1 as cnpj,  "
+            + "        X030.nomcid AS municipio,  "
+            + "        X030.uf AS uf, "
+            + "        chave_acesso = '                              ', "
+            + "        X040.docto2 AS inscricao "
+            + " FROM ACT12000 AS C120"
+            + " INNER JOIN AXT04000 AS X040 ON X040.idnome = C120.idnome "
+            + "   INNER JOIN AXT02000 AS X020A ON X020A.idparametro = C120.sitsis "
+            + "   INNER JOIN AXT03000 AS X030  ON X030.idcidade     = X040.idcidade"
+            + " WHERE C120.idcomercial = :id AND (X040.razsoc like 'ACME%' OR X030.uf = 'SP')"
+            + " ORDER BY C120.idnome, X040.razsoc DESC LIMIT 10 OFFSET 20";
+
+    static final String LONG = generate(10 * 1024);
+
+    private Statements() {}
+
+    static String of(String size) {
+        if ("short".equals(size)) return SHORT;
+        if ("medium".equals(size)) return MEDIUM;
+        if ("long".equals(size)) return LONG;
+        throw new IllegalArgumentException("Unknown statement size: " + size);
+    }
+
+    /**
+     * A SELECT with as many columns, joins and conditions as needed to reach the length.
+     */
+    static String generate(int length) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder joins = new StringBuilder();
+        StringBuilder conditions = new StringBuilder();
+
+        for (int i = 0; columns.length() + joins.length() + conditions.length() < length; i++) {
+            if (i > 0) {
+                columns.append(", ");
+                conditions.append(i % 2 == 0 ? " AND " : " OR ");
+            }
+            columns.append("t").append(i).append(".campo").append(i)
+                   .append(" || 'texto ").append(i).append("' AS nome").append(i)
+                   .append(", RTRIM(t").append(i).append(".descricao, ").append(i).append(")");
+            joins.append(" INNER JOIN tabela").append(i).append(" AS t").append(i)
+                 .append(" ON t").append(i).append(".id = t0.id");
+            conditions.append("(t").append(i).append(".valor + ").append(i).append(" * 2 >= ").append(i * 3.5)
+                      .append(" AND t").append(i).append(".codigo <> :param").append(i).append(")");
+        }
+
+        return "SELECT " + columns + " FROM tabela0 AS t0" + joins + " WHERE " + conditions + " ORDER BY t0.id DESC";
+    }
+}
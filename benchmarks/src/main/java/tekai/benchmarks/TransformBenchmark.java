@@ -0,0 +1,69 @@
+package tekai.benchmarks;
+
+import static tekai.Expression.e;
+import static tekai.standard.CommonTransformation.from;
+import static tekai.standard.CommonTransformation.fromType;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tekai.Expression;
+import tekai.standard.MultiTransformation;
+
+/**
+ * {@link MultiTransformation#applyOn(Expression)} on deep trees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private MultiTransformation transformation;
+    private Expression expression;
+
+    @Setup
+    public void setUp() {
+        transformation = new MultiTransformation();
+        transformation.register(from("SUBSTRING", "FUNCTION").toValue("SUBSTR"));
+        transformation.register(from("CAST", "FUNCTION").toValue("CONVERT").toParamOrder(2, 1));
+        transformation.register(from("VARCHAR2", "DATATYPE").toValue("VARCHAR"));
+        transformation.register(from("\\|\\|", "CONCAT").toValue("CONCAT").toType("FUNCTION"));
+        transformation.register(fromType("COMMENT").toNothing());
+
+        expression = e("campo", "IDENTIFIER");
+        for (int i = 0; i < depth; i++) {
+            switch (i % 3) {
+                case 0:
+                    expression = e("SUBSTRING", "FUNCTION", expression, e(" 0", "NUMBER"), e(" 4", "NUMBER"));
+                    break;
+                case 1:
+                    expression = e("CAST", "FUNCTION", expression, e(" VARCHAR2", "DATATYPE"));
+                    break;
+                default:
+                    expression = e(" ||", "CONCAT", expression, e(" 'texto'", "STRING"), e(" campo", "IDENTIFIER"));
+            }
+        }
+    }
+
+    @Benchmark
+    public Expression applyOn() {
+        return transformation.applyOn(expression);
+    }
+}
@@ -0,0 +1,93 @@
+package tekai;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * All {@link Parselet#startingRegularExpression()} of a list of parselets joined in a
+ * single pattern, one named group per parselet, so a single scan finds the first
+ * parselet (in registration order) that matches.
+ */
+final class Alternation {
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    private final Parselet[] parselets;
+    private final Pattern pattern;
+    private final int[] groups;
+    private final int[] lastGroups;
+
+    private Alternation(Parselet[] parselets, Pattern pattern, int[] groups, int[] lastGroups) {
+        this.parselets = parselets;
+        this.pattern = pattern;
+        this.groups = groups;
+        this.lastGroups = lastGroups;
+    }
+
+    /**
+     * Combined pattern for the parselets, or null if they can't be combined without
+     * changing which one matches first (back references, expressions that may start
+     * with spacing or match an empty string).
+     */
+    static Alternation of(List<Parselet> parselets) {
+        if (parselets.isEmpty()) return null;
+
+        Parselet[] all = parselets.toArray(new Parselet[parselets.size()]);
+        int[] groups = new int[all.length];
+        int[] lastGroups = new int[all.length];
+
+        // Every expression starts with a known non spacing character, so the
+        // spacing can't be shared with the expressions and may be possessive.
+        StringBuilder combined = new StringBuilder("^(\\s*+)(?:");
+        int group = 1;
+        for (int i = 0; i < all.length; i++) {
+            String regularExpression = all[i].startingRegularExpression();
+            if (FirstCharacters.of(regularExpression) == null) return null;
+            if (BACK_REFERENCE.matcher(regularExpression).find()) return null;
+
+            if (i > 0) combined.append('|');
+            combined.append("(?<tekai").append(i).append('>').append(regularExpression).append(')');
+
+            groups[i] = ++group;
+            group += all[i].startingPattern().matcher("").groupCount() - 2;
+            lastGroups[i] = group;
+        }
+        combined.append(')');
+
+        try {
+            return new Alternation(all, Pattern.compile(combined.toString()), groups, lastGroups);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Index of the parselet whose group took part in the match.
+     */
+    int matched(Matcher matcher) {
+        for (int i = 0; i < groups.length; i++)
+            if (matcher.start(groups[i]) >= 0) return i;
+        throw new IllegalStateException("No parselet group in match");
+    }
+
+    Parselet parselet(int index) {
+        return parselets[index];
+    }
+
+    /**
+     * Same rule {@link Source} uses for a single expression: the last inner group
+     * that matched or, if none, the whole expression.
+     */
+    int lastMatchedGroup(Matcher matcher, int index) {
+        for (int i = lastGroups[index]; i > groups[index]; i--)
+            if (matcher.start(i) >= 0) return i;
+
+        return groups[index];
+    }
+}
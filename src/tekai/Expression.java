@@ -1,9 +1,12 @@
 package tekai;
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.RandomAccess;
 import java.util.regex.Pattern;
 
 import static java.util.Arrays.asList;
@@ -11,33 +14,87 @@ import static tekai.javaexpansions.Strings.join;
 
 public class Expression {
 
-    private final String spacing;
+    private static final Expression[] NO_CHILDREN = new Expression[0];
+
+    // spacing is text[start, valueStart), value is text[valueStart, end)
+    private final CharSequence text;
+    private final int start;
+    private final int valueStart;
+    private final int end;
     private final String type;
-    private final String value;
-    private List<Expression> children = new LinkedList<Expression>();
+    private Expression[] children = NO_CHILDREN;
+    private int childCount = 0;
+    private Span span;
 
     // == Construction
 
     public Expression(String type, String value) {
-        Pattern pattern = Pattern.compile("^(\\s*)(.*)");
-        Matcher matcher = pattern.matcher(value);
-        if (matcher.find()) {
-            this.spacing = matcher.group(1);
-            this.value = matcher.group(2);
-        } else {
-            this.spacing = "";
-            this.value = matcher.group(2);
-        }
+        this(type, value, 0, value.length());
+    }
+
+    /**
+     * Expression whose value is a slice of a bigger text (usually the source being parsed),
+     * kept as offsets instead of a copy. The text is expected not to change.
+     * <p>
+     * As with {@link #Expression(String, String)}, leading spaces are the spacing and the
+     * value goes up to the first line break.
+     * </p>
+     */
+    public Expression(String type, CharSequence text, int start, int end) {
+        int valueStart = start;
+        while (valueStart < end && FirstCharacters.isWhitespace(text.charAt(valueStart)))
+            valueStart++;
+
+        int valueEnd = valueStart;
+        while (valueEnd < end && !isLineBreak(text.charAt(valueEnd)))
+            valueEnd++;
+
+        this.text = text;
+        this.start = start;
+        this.valueStart = valueStart;
+        this.end = valueEnd;
         this.type = type;
     }
 
+    private Expression(Expression original, Expression[] children, Span span) {
+        this.text = original.text;
+        this.start = original.start;
+        this.valueStart = original.valueStart;
+        this.end = original.end;
+        this.type = original.type;
+        this.children = children;
+        this.childCount = children.length;
+        this.span = span;
+    }
+
+    /**
+     * Copy of this expression with another child at the index and another span.
+     */
+    Expression withChild(int index, Expression child, Span span) {
+        Expression[] copy = Arrays.copyOf(children, childCount);
+        copy[index] = child;
+        return new Expression(this, copy, span);
+    }
+
+    private static boolean isLineBreak(char character) {
+        return character == '\n' || character == '\r' || character == '\u0085'
+            || character == '\u2028' || character == '\u2029';
+    }
+
     public void addChildren(Expression... expressions) {
+        span = null;
+        ensureRoomFor(expressions.length);
         for(Expression expression : expressions)
-            children.add(expression);
+            children[childCount++] = expression;
     }
 
+    /**
+     * Replaces the children by (a copy of) the given ones.
+     */
     public void addChildren(List<Expression> expressions) {
-        children = expressions;
+        span = null;
+        children = expressions.isEmpty() ? NO_CHILDREN : expressions.toArray(new Expression[expressions.size()]);
+        childCount = children.length;
     }
 
     public void addFirstChild(Expression expression){
@@ -45,11 +102,37 @@ public class Expression {
     }
 
     public void addChildAt(Expression expression, int index){
-        children.add(index, expression);
+        if (index < 0 || index > childCount) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + childCount);
+
+        span = null;
+        ensureRoomFor(1);
+        System.arraycopy(children, index, children, index + 1, childCount - index);
+        children[index] = expression;
+        childCount++;
+    }
+
+    private Expression removeChildAt(int index) {
+        Expression removed = getChild(index);
+        span = null;
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        children[--childCount] = null;
+        return removed;
+    }
+
+    /**
+     * Children are usually added all at once, so the array is kept at the exact
+     * size unless they come one by one.
+     */
+    private void ensureRoomFor(int more) {
+        int needed = childCount + more;
+        if (needed <= children.length) return;
+
+        int capacity = childCount == 0 ? needed : Math.max(needed, childCount + (childCount >> 1));
+        children = Arrays.copyOf(children, capacity);
     }
 
     public static Expression e(String value, String type, Expression ... expressions) {
-        return e(value, type, new LinkedList<Expression>(asList(expressions)));
+        return e(value, type, asList(expressions));
     }
 
     public static Expression e(String value, String type, List<Expression> expressions) {
@@ -61,7 +144,15 @@ public class Expression {
     // == Accessors ==
 
     public String getValue() {
-        return value;
+        return slice(valueStart, end);
+    }
+
+    /**
+     * {@link #getValue()} as a view over the text it came from, without copying it.
+     */
+    public CharSequence getValueSequence() {
+        if (valueStart == 0 && end == text.length()) return text;
+        return new Slice(text, valueStart, end);
     }
 
     public String getType() {
@@ -69,50 +160,103 @@ public class Expression {
     }
 
     public String getSpacing() {
-        return spacing;
+        return slice(start, valueStart);
     }
 
     /**
      * {@link #getSpacing()} + {@link #getValue()}
      */
     public String printValue() {
-        return getSpacing() + getValue();
+        return slice(start, end);
+    }
+
+    /**
+     * Appends {@link #printValue()} to the output, without making the string.
+     */
+    public void printValue(Appendable out) throws IOException {
+        out.append(text, start, end);
     }
 
+    private String slice(int from, int to) {
+        if (from == 0 && to == text.length() && text instanceof String) return (String) text;
+        return text.subSequence(from, to).toString();
+    }
+
+    /**
+     * Live view of the children: changes made through it change this expression.
+     */
     public List<Expression> getChildren() {
-      return children;
+        return new Children();
     }
 
     public Expression getChild(int i) {
-        return children.get(i);
+        if (i < 0 || i >= childCount) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + childCount);
+        return children[i];
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Part of the source this expression (children included) was parsed from, null
+     * if it wasn't parsed or was changed afterwards.
+     * <p>
+     * Only changes made to this expression are noticed, changes to its children aren't.
+     * </p>
+     */
+    public Span getSpan() {
+        return span;
+    }
+
+    void setSpan(Span span) {
+        this.span = span;
+    }
+
+    // Where the value came from, for the ones flattening this expression (see ExpressionArena)
+
+    CharSequence text() {
+        return text;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int valueStart() {
+        return valueStart;
+    }
+
+    int end() {
+        return end;
     }
 
     // == Inspection ==
 
     public boolean isType(String type) {
-      return this.type != null && this.type.equals(type);
+      return getType() != null && getType().equals(type);
     }
 
     public boolean hasValue(String regex) {
-        return value.matches(regex);
+        return Pattern.matches(regex, getValueSequence());
     }
 
     // == Helpers ==
 
     @Override
     public String toString() {
-        if (children.isEmpty())
-            return "[" + value + "]:" + type;
+        if (getChildCount() == 0)
+            return "[" + getValue() + "]:" + getType();
         else
-            return "([" + value + "]:" + type + " " + joinChildren() + ")";
+            return "([" + getValue() + "]:" + getType() + " " + joinChildren() + ")";
     }
 
     public String joinChildren() {
-        if (children == null || children.isEmpty()) return "";
+        if (getChildCount() == 0) return "";
 
         StringBuilder result = new StringBuilder();
 
-        Iterator<Expression> iterator = children.iterator();
+        Iterator<Expression> iterator = getChildren().iterator();
         result.append(iterator.next().toString());
 
         while(iterator.hasNext()) {
@@ -133,7 +277,7 @@ public class Expression {
 
         lines.add(deepPrintPrefix(deep) + getValue() + " (" + getType() + ")");
 
-        Iterator<Expression> iterator = children.iterator();
+        Iterator<Expression> iterator = getChildren().iterator();
 
         while (iterator.hasNext()) {
             Expression child = iterator.next();
@@ -152,4 +296,78 @@ public class Expression {
         if (deep <= 0) return "";
         return "|__ ";
     }
+
+    // == Helper classes
+
+    private class Children extends AbstractList<Expression> implements RandomAccess {
+
+        @Override
+        public Expression get(int index) {
+            return getChild(index);
+        }
+
+        @Override
+        public int size() {
+            return childCount;
+        }
+
+        @Override
+        public Expression set(int index, Expression element) {
+            Expression previous = getChild(index);
+            span = null;
+            children[index] = element;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Expression element) {
+            addChildAt(element, index);
+            modCount++;
+        }
+
+        @Override
+        public Expression remove(int index) {
+            Expression removed = removeChildAt(index);
+            modCount++;
+            return removed;
+        }
+    }
+
+    /**
+     * Characters of a text from one offset to another, read in place.
+     */
+    private static final class Slice implements CharSequence {
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+
+        Slice(CharSequence text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + (to - from));
+            return text.charAt(from + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > to - from || start > end)
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of length " + (to - from));
+            return new Slice(text, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(from, to).toString();
+        }
+    }
 }
@@ -0,0 +1,310 @@
+package tekai;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A parsed tree packed in parallel int arrays, one slot per node, in pre-order
+ * (the root is node 0).
+ * <p>
+ * Values are kept as offsets into the parsed source. Values that don't come from the
+ * source (made by the parselets) are copied once into a single buffer. Types are interned
+ * in a small symbol table, so a node is a handful of ints and a tree is a few objects no
+ * matter how many nodes it has. Use it to keep many trees around, or to scan a tree for a
+ * few node types.
+ * </p>
+ * <p>
+ * Arenas are packed with {@link #of(CharSequence, Expression)} from a tree the parser
+ * already made. Packing allocates on top of what parsing does: it saves the heap the
+ * trees keep, not the garbage a parse makes.
+ * </p>
+ * <p>
+ * {@link #root()} and {@link #node(int)} give read only {@link Expression} views over the
+ * arrays, made on demand, so {@link Printer} and {@link Transformation} work on arenas as well.
+ * </p>
+ */
+public final class ExpressionArena {
+
+    public static final int NONE = -1;
+
+    private final CharSequence source;
+    private final StringBuilder strings = new StringBuilder();
+
+    private final List<String> typeNames = new ArrayList<String>();
+    private final Map<String, Integer> typeIds = new HashMap<String, Integer>();
+
+    private final int[] type;
+    private final int[] start;
+    private final int[] end;
+    private final int[] spacing;
+    private final int[] nextSibling;
+    // children of a node are childCount of them in children, from childStart on
+    private final int[] childStart;
+    private final int[] childCount;
+    private final int[] children;
+    private int size = 0;
+    private int childrenSize = 0;
+
+    // == Construction ==
+
+    private ExpressionArena(CharSequence source, int capacity) {
+        this.source = source == null ? "" : source;
+        this.type = new int[capacity];
+        this.start = new int[capacity];
+        this.end = new int[capacity];
+        this.spacing = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.childStart = new int[capacity];
+        this.childCount = new int[capacity];
+        this.children = new int[Math.max(0, capacity - 1)];
+    }
+
+    /**
+     * Packs the tree parsed from the source (root may be null, giving an empty arena).
+     */
+    public static ExpressionArena of(CharSequence source, Expression root) {
+        ExpressionArena arena = new ExpressionArena(source, count(root));
+        if (root != null) arena.add(root);
+        return arena;
+    }
+
+    private static int count(Expression expression) {
+        if (expression == null) return 0;
+
+        int result = 1;
+        for (Expression child : expression.getChildren())
+            result += count(child);
+        return result;
+    }
+
+    private int add(Expression expression) {
+        int node = size++;
+        type[node] = intern(expression.getType());
+        nextSibling[node] = NONE;
+
+        if (expression.text() == source) {
+            start[node] = expression.start();
+            end[node] = expression.end();
+            spacing[node] = expression.valueStart() - expression.start();
+        } else {
+            // past the source means "in the strings buffer"
+            start[node] = source.length() + strings.length();
+            strings.append(expression.printValue());
+            end[node] = source.length() + strings.length();
+            spacing[node] = expression.getSpacing().length();
+        }
+
+        List<Expression> expressionChildren = expression.getChildren();
+        childStart[node] = childrenSize;
+        childCount[node] = expressionChildren.size();
+        childrenSize += expressionChildren.size();
+
+        int previous = NONE;
+        for (int i = 0; i < expressionChildren.size(); i++) {
+            int added = add(expressionChildren.get(i));
+            children[childStart[node] + i] = added;
+            if (previous != NONE) nextSibling[previous] = added;
+            previous = added;
+        }
+
+        return node;
+    }
+
+    private int intern(String typeName) {
+        Integer id = typeIds.get(typeName);
+        if (id == null) {
+            id = typeNames.size();
+            typeNames.add(typeName);
+            typeIds.put(typeName, id);
+        }
+        return id;
+    }
+
+    // == Arrays ==
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Id of the type name in this arena, {@link #NONE} if no node has it.
+     */
+    public int typeId(String typeName) {
+        Integer id = typeIds.get(typeName);
+        return id == null ? NONE : id;
+    }
+
+    public String typeName(int typeId) {
+        return typeNames.get(typeId);
+    }
+
+    public int typeOf(int node) {
+        return type[check(node)];
+    }
+
+    public int firstChildOf(int node) {
+        return childCount[check(node)] == 0 ? NONE : children[childStart[node]];
+    }
+
+    public int childCountOf(int node) {
+        return childCount[check(node)];
+    }
+
+    public int childOf(int node, int index) {
+        if (index < 0 || index >= childCount[check(node)])
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + childCount[node]);
+        return children[childStart[node] + index];
+    }
+
+    public int nextSiblingOf(int node) {
+        return nextSibling[check(node)];
+    }
+
+    /**
+     * Same as {@link Expression#getValue()}, for the node.
+     */
+    public String valueOf(int node) {
+        check(node);
+        return slice(start[node] + spacing[node], end[node]);
+    }
+
+    /**
+     * Same as {@link Expression#printValue()}, for the node.
+     */
+    public String printValueOf(int node) {
+        check(node);
+        return slice(start[node], end[node]);
+    }
+
+    private String slice(int from, int to) {
+        int length = source.length();
+        if (from >= length && to > length) return strings.substring(from - length, to - length);
+        return source.subSequence(from, to).toString();
+    }
+
+    private int check(int node) {
+        if (node < 0 || node >= size) throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + size);
+        return node;
+    }
+
+    // == Views ==
+
+    /**
+     * View of the root, null if the arena is empty.
+     */
+    public Expression root() {
+        return size == 0 ? null : node(0);
+    }
+
+    public Expression node(int node) {
+        return new Node(check(node));
+    }
+
+    // == Helper classes
+
+    /**
+     * Read only view of a node.
+     */
+    private class Node extends Expression {
+
+        private final int node;
+
+        Node(int node) {
+            super(null, "");
+            this.node = node;
+        }
+
+        @Override
+        public String getValue() {
+            return valueOf(node);
+        }
+
+        @Override
+        public CharSequence getValueSequence() {
+            return valueOf(node);
+        }
+
+        @Override
+        public String getType() {
+            return typeName(type[node]);
+        }
+
+        @Override
+        public String getSpacing() {
+            return slice(start[node], start[node] + spacing[node]);
+        }
+
+        @Override
+        public String printValue() {
+            return printValueOf(node);
+        }
+
+        @Override
+        public void printValue(Appendable out) throws IOException {
+            int length = source.length();
+            if (start[node] >= length && end[node] > length)
+                out.append(strings, start[node] - length, end[node] - length);
+            else
+                out.append(source, start[node], end[node]);
+        }
+
+        @Override
+        public List<Expression> getChildren() {
+            return new Children(node);
+        }
+
+        @Override
+        public Expression getChild(int i) {
+            return new Node(childOf(node, i));
+        }
+
+        @Override
+        public int getChildCount() {
+            return childCount[node];
+        }
+
+        @Override
+        CharSequence text() {
+            return null;
+        }
+
+        @Override
+        public void addChildren(Expression... expressions) {
+            throw new UnsupportedOperationException("Expressions in an arena can't be changed");
+        }
+
+        @Override
+        public void addChildren(List<Expression> expressions) {
+            throw new UnsupportedOperationException("Expressions in an arena can't be changed");
+        }
+
+        @Override
+        public void addChildAt(Expression expression, int index) {
+            throw new UnsupportedOperationException("Expressions in an arena can't be changed");
+        }
+    }
+
+    private class Children extends AbstractList<Expression> implements RandomAccess {
+
+        private final int parent;
+
+        Children(int parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Expression get(int index) {
+            return new Node(childOf(parent, index));
+        }
+
+        @Override
+        public int size() {
+            return childCount[parent];
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 128 bit hash of a statement with its literals left out, so statements differing only
+ * in literal values (numbers, strings, parameters...) have equal fingerprints.
+ * <p>
+ * It's computed while parsing, from the text as the parser consumes it: spacing and
+ * tokens go into the hash as they are, tokens that became literals (leaves of one of the
+ * literal types, made from that single token) go in as a placeholder of their type, and
+ * their values are kept, in order, in {@link #getLiterals()}.
+ * </p>
+ * <p>
+ * Fingerprints are equal when the statements have the same shape (the text with
+ * placeholders instead of literals, which every fingerprint keeps), so they can be used
+ * as keys to group or cache statements by shape. The hash is their {@link #hashCode()}
+ * and tells most different shapes apart without comparing them.
+ * </p>
+ */
+public final class Fingerprint {
+
+    private final long high;
+    private final long low;
+    private final String shape;
+    private final List<String> literals;
+
+    Fingerprint(long high, long low, String shape, List<String> literals) {
+        this.high = high;
+        this.low = low;
+        this.shape = shape;
+        this.literals = literals;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Text of the statement, each literal replaced by NUL and the number of its type
+     * (counted from 1), and every NUL of the text doubled.
+     */
+    String getShape() {
+        return shape;
+    }
+
+    /**
+     * Values of the literals, in the order they appear in the source.
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Same fingerprint, without the literals (to be kept as a key).
+     */
+    Fingerprint withoutLiterals() {
+        return literals.isEmpty() ? this : new Fingerprint(high, low, shape, Collections.<String>emptyList());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Fingerprint)) return false;
+        Fingerprint fingerprint = (Fingerprint) other;
+        return high == fingerprint.high && low == fingerprint.low && shape.equals(fingerprint.shape);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    // == Helper classes
+
+    /**
+     * Fingerprint of the parse in progress, fed by {@link Source} with the text it
+     * consumes and by {@link Parser} with the expressions the text became.
+     * <p>
+     * The last consumed token is held back until the next one comes, as it's only
+     * known to be a literal after its parselet returns.
+     * </p>
+     */
+    static final class Builder {
+
+        private final String[] literalTypes;
+        private long high = 0xCBF29CE484222325L;
+        private long low = 0x9E3779B97F4A7C15L;
+        private final StringBuilder shape = new StringBuilder();
+
+        private CharSequence text;
+        private int pendingStart = -1;
+        private int pendingValueStart;
+        private int pendingEnd;
+
+        private final List<String> literals = new ArrayList<String>();
+        private final List<Expression> literalExpressions = new ArrayList<Expression>();
+
+        Builder(String... literalTypes) {
+            this.literalTypes = literalTypes;
+        }
+
+        /**
+         * The source consumed its text from start to end, the token starting at valueStart.
+         */
+        void consumed(CharSequence text, int start, int valueStart, int end) {
+            flush();
+            this.text = text;
+            this.pendingStart = start;
+            this.pendingValueStart = Math.max(start, Math.min(valueStart, end));
+            this.pendingEnd = end;
+        }
+
+        /**
+         * A prefix parselet returned the expression, ending where the source now is.
+         */
+        void produced(Expression expression, int end) {
+            if (pendingStart < 0 || pendingEnd != end || expression.getChildCount() > 0) return;
+
+            int type = literalType(expression.getType());
+            if (type < 0) return;
+
+            String value = expression.getValue();
+            if (!isPendingValue(value)) return;
+
+            for (int i = pendingStart; i < pendingValueStart; i++)
+                update(text.charAt(i));
+            update(-1 - type);
+            pendingStart = -1;
+
+            literals.add(value);
+            literalExpressions.add(expression);
+        }
+
+        private int literalType(String type) {
+            for (int i = 0; i < literalTypes.length; i++)
+                if (literalTypes[i].equals(type)) return i;
+            return -1;
+        }
+
+        private boolean isPendingValue(String value) {
+            if (value.length() != pendingEnd - pendingValueStart) return false;
+            for (int i = 0; i < value.length(); i++)
+                if (value.charAt(i) != text.charAt(pendingValueStart + i)) return false;
+            return true;
+        }
+
+        private void flush() {
+            if (pendingStart < 0) return;
+            for (int i = pendingStart; i < pendingEnd; i++)
+                update(text.charAt(i));
+            pendingStart = -1;
+        }
+
+        /**
+         * Adds a character of the text, or the placeholder of a literal type if negative.
+         */
+        private void update(int value) {
+            if (value < 0) shape.append('\0').append((char) -value);
+            else if (value == 0) shape.append('\0').append('\0');
+            else shape.append((char) value);
+
+            high = (high ^ value) * 0x100000001B3L;
+            low = Long.rotateLeft(low ^ value * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+
+        /**
+         * Literal expressions of the parse, in the same order as the literals.
+         */
+        List<Expression> getLiteralExpressions() {
+            return literalExpressions;
+        }
+
+        Fingerprint build() {
+            flush();
+            return new Fingerprint(mix(high), mix(low), shape.toString(), Collections.unmodifiableList(new ArrayList<String>(literals)));
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hash *= 0xC4CEB9FE1A85EC53L;
+            return hash ^ (hash >>> 33);
+        }
+    }
+}
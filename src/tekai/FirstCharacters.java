@@ -0,0 +1,341 @@
+package tekai;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the characters a regular expression can start with.
+ * <p>
+ * Only the usual constructs found in parselets are understood (literals, escapes,
+ * classes, groups, alternations, quantifiers, word boundaries and the "i" flag).
+ * Anything else, expressions that may match an empty string and expressions that
+ * may start with a space make {@link #of(String)} return null, meaning "could start
+ * with anything".
+ * </p>
+ */
+final class FirstCharacters {
+
+    private static final String WHITESPACE = " \t\n\u000B\f\r";
+    private static final int MAX_CLASS_SIZE = 256;
+
+    private final String expression;
+    private int position = 0;
+    private boolean caseInsensitive = false;
+
+    private FirstCharacters(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Characters the expression can start with, or null when they could not be determined.
+     */
+    public static Set<Character> of(String regularExpression) {
+        if (regularExpression == null) return null;
+
+        try {
+            FirstCharacters analyzer = new FirstCharacters(regularExpression);
+            First first = analyzer.alternation();
+            if (analyzer.position < regularExpression.length()) return null;
+            if (first.nullable) return null;
+            for (Character character : first.characters)
+                if (isWhitespace(character)) return null;
+            return first.characters;
+        } catch (Unknown e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same characters {@link Source} skips as spacing ("\s").
+     */
+    static boolean isWhitespace(char character) {
+        return WHITESPACE.indexOf(character) >= 0;
+    }
+
+    // == Recursive descent ==
+
+    private First alternation() {
+        First result = sequence();
+        while (peek('|')) {
+            position++;
+            result = result.or(sequence());
+        }
+        return result;
+    }
+
+    private First sequence() {
+        First result = First.empty();
+        while (position < expression.length() && !peek('|') && !peek(')')) {
+            if (result.nullable) {
+                result = result.then(quantified(atom()));
+            } else {
+                skipAtom();
+                quantified(First.empty());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves past an atom that can no longer change the first characters.
+     */
+    private void skipAtom() {
+        int depth = 0;
+        boolean inClass = false;
+        do {
+            char character = expression.charAt(position++);
+            if (character == '\\') {
+                position++;
+            } else if (inClass) {
+                if (character == ']') inClass = false;
+            } else if (character == '[') {
+                inClass = true;
+                if (peek('^')) position++;
+                if (peek(']')) position++;
+            } else if (character == '(') {
+                depth++;
+            } else if (character == ')') {
+                depth--;
+            }
+        } while ((depth > 0 || inClass) && position < expression.length());
+
+        if (depth > 0 || inClass) throw new Unknown();
+    }
+
+    private First quantified(First atom) {
+        if (position >= expression.length()) return atom;
+
+        char quantifier = expression.charAt(position);
+        boolean optional;
+        if (quantifier == '*' || quantifier == '?') {
+            position++;
+            optional = true;
+        } else if (quantifier == '+') {
+            position++;
+            optional = false;
+        } else if (quantifier == '{') {
+            int end = expression.indexOf('}', position);
+            if (end < 0) throw new Unknown();
+            String minimum = expression.substring(position + 1, end).split(",", -1)[0].trim();
+            if (!minimum.matches("\\d+")) throw new Unknown();
+            optional = Integer.parseInt(minimum) == 0;
+            position = end + 1;
+        } else {
+            return atom;
+        }
+
+        // lazy or possessive modifiers
+        if (peek('?') || peek('+')) position++;
+
+        return optional ? atom.optional() : atom;
+    }
+
+    private First atom() {
+        char character = expression.charAt(position++);
+        switch (character) {
+            case '(':  return group();
+            case '[':  return characterClass();
+            case '\\': return escape();
+            case '.':
+            case '^':
+            case '$':  throw new Unknown();
+            default:   return First.of(withCase(character));
+        }
+    }
+
+    private First group() {
+        boolean outerCaseInsensitive = caseInsensitive;
+
+        if (peek('?')) {
+            position++;
+            if (peek(':') || peek('>')) {
+                position++;
+            } else if (peek('<') && position + 1 < expression.length() && Character.isLetter(expression.charAt(position + 1))) {
+                int end = expression.indexOf('>', position);
+                if (end < 0) throw new Unknown();
+                position = end + 1;
+            } else if (flags()) {
+                // "(?i)" changes the rest of the enclosing group
+                return First.empty();
+            }
+        }
+
+        First result = alternation();
+        if (!peek(')')) throw new Unknown();
+        position++;
+
+        caseInsensitive = outerCaseInsensitive;
+        return result;
+    }
+
+    /**
+     * Reads inline flags, returning true for "(?i)" and false for "(?i:".
+     */
+    private boolean flags() {
+        boolean enable = true;
+        boolean sawFlag = false;
+        while (position < expression.length()) {
+            char flag = expression.charAt(position++);
+            if (flag == 'i') {
+                caseInsensitive = enable;
+                sawFlag = true;
+            } else if (flag == '-') {
+                enable = false;
+            } else if (flag == ')' && sawFlag) {
+                return true;
+            } else if (flag == ':' && sawFlag) {
+                return false;
+            } else {
+                throw new Unknown();
+            }
+        }
+        throw new Unknown();
+    }
+
+    private First characterClass() {
+        if (peek('^')) throw new Unknown();
+
+        Set<Character> characters = new HashSet<Character>();
+        boolean first = true;
+        while (position < expression.length()) {
+            char character = expression.charAt(position++);
+
+            if (character == ']' && !first) return First.of(characters);
+            if (character == '[' || (character == '&' && peek('&'))) throw new Unknown();
+            first = false;
+
+            Set<Character> single;
+            if (character == '\\') {
+                if (peek('b') || peek('B')) throw new Unknown();
+                single = escape().characters;
+            } else if (peek('-') && position + 1 < expression.length() && expression.charAt(position + 1) != ']') {
+                position++;
+                char last = expression.charAt(position++);
+                if (last == '\\' || last < character || last - character > MAX_CLASS_SIZE) throw new Unknown();
+                single = new HashSet<Character>();
+                for (int c = character; c <= last; c++)
+                    single.addAll(withCase((char) c));
+            } else {
+                single = withCase(character);
+            }
+
+            characters.addAll(single);
+            if (characters.size() > MAX_CLASS_SIZE) throw new Unknown();
+        }
+        throw new Unknown();
+    }
+
+    private First escape() {
+        if (position >= expression.length()) throw new Unknown();
+        char character = expression.charAt(position++);
+        switch (character) {
+            case 'd': return First.of(range('0', '9'));
+            case 'w': return First.of(wordCharacters());
+            case 's': return First.of(whitespace());
+            case 'b':
+            case 'B': return First.empty();
+            case 't': return First.of(single('\t'));
+            case 'n': return First.of(single('\n'));
+            case 'r': return First.of(single('\r'));
+            case 'f': return First.of(single('\f'));
+            case 'Q': return quoted();
+            default:
+                if (Character.isLetterOrDigit(character)) throw new Unknown();
+                return First.of(withCase(character));
+        }
+    }
+
+    private First quoted() {
+        int end = expression.indexOf("\\E", position);
+        String literal = end < 0 ? expression.substring(position) : expression.substring(position, end);
+        position = end < 0 ? expression.length() : end + 2;
+        return literal.isEmpty() ? First.empty() : First.of(withCase(literal.charAt(0)));
+    }
+
+    // == Character sets ==
+
+    private Set<Character> withCase(char character) {
+        Set<Character> result = single(character);
+        if (caseInsensitive && character < 128) {
+            result.add(Character.toUpperCase(character));
+            result.add(Character.toLowerCase(character));
+        }
+        return result;
+    }
+
+    private static Set<Character> single(char character) {
+        Set<Character> result = new HashSet<Character>();
+        result.add(character);
+        return result;
+    }
+
+    private static Set<Character> range(char first, char last) {
+        Set<Character> result = new HashSet<Character>();
+        for (int c = first; c <= last; c++)
+            result.add((char) c);
+        return result;
+    }
+
+    private static Set<Character> wordCharacters() {
+        Set<Character> result = range('a', 'z');
+        result.addAll(range('A', 'Z'));
+        result.addAll(range('0', '9'));
+        result.add('_');
+        return result;
+    }
+
+    private static Set<Character> whitespace() {
+        Set<Character> result = new HashSet<Character>();
+        for (char c : WHITESPACE.toCharArray())
+            result.add(c);
+        return result;
+    }
+
+    private boolean peek(char character) {
+        return position < expression.length() && expression.charAt(position) == character;
+    }
+
+    // == Helper classes
+
+    private static class First {
+        private final Set<Character> characters;
+        private final boolean nullable;
+
+        private First(Set<Character> characters, boolean nullable) {
+            this.characters = characters;
+            this.nullable = nullable;
+        }
+
+        static First empty() {
+            return new First(new HashSet<Character>(), true);
+        }
+
+        static First of(Set<Character> characters) {
+            return new First(characters, false);
+        }
+
+        First optional() {
+            return new First(characters, true);
+        }
+
+        First or(First other) {
+            Set<Character> union = new HashSet<Character>(characters);
+            union.addAll(other.characters);
+            return new First(union, nullable || other.nullable);
+        }
+
+        First then(First next) {
+            if (!nullable) return this;
+            Set<Character> union = new HashSet<Character>(characters);
+            union.addAll(next.characters);
+            return new First(union, next.nullable);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class Unknown extends RuntimeException {
+        Unknown() {
+            super(null, null, false, false);
+        }
+    }
+}
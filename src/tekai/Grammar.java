@@ -0,0 +1,116 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A frozen {@link Parser}: no rules can be added anymore and every call to
+ * {@link #parse(CharSequence)} keeps its state to itself, so a single grammar
+ * can serve many threads at once, with no locking.
+ * <p>
+ * Made by {@link Parser#freeze()}. The parser itself is not exposed, and its parselets
+ * can't be changed anymore either.
+ * </p>
+ */
+public final class Grammar {
+
+    // chunks per thread, so threads that finish early take some of the work of slower ones
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Parser parser;
+
+    Grammar(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @throws UnparseableException
+     */
+    public Expression parse(CharSequence source) {
+        return parser.parse(source);
+    }
+
+    /**
+     * @throws UnparseableException
+     * @see Parser#fingerprint(CharSequence, String...)
+     */
+    public Fingerprint fingerprint(CharSequence source, String... literalTypes) {
+        return parser.fingerprint(source, literalTypes);
+    }
+
+    Expression parse(CharSequence source, Fingerprint.Builder fingerprint) {
+        return parser.parse(source, fingerprint);
+    }
+
+    // == Batches ==
+
+    /**
+     * Parses independent sources in the common {@link ForkJoinPool}.
+     * <p>
+     * Results come in the same order as the sources. A source that can't be parsed
+     * gives a failed {@link ParseResult} instead of stopping the batch.
+     * </p>
+     */
+    public List<ParseResult> parseAll(Iterable<? extends CharSequence> sources) {
+        return parseAll(sources, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #parseAll(Iterable)}, in the given executor.
+     */
+    public List<ParseResult> parseAll(Iterable<? extends CharSequence> sources, ExecutorService executor) {
+        final List<CharSequence> all = new ArrayList<CharSequence>();
+        for (CharSequence source : sources)
+            all.add(source);
+
+        final ParseResult[] results = new ParseResult[all.size()];
+        if (all.isEmpty()) return Arrays.asList(results);
+
+        int threads = executor instanceof ForkJoinPool
+            ? ((ForkJoinPool) executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+        int chunkSize = Math.max(1, all.size() / (threads * CHUNKS_PER_THREAD));
+
+        List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+        for (int first = 0; first < all.size(); first += chunkSize) {
+            final int from = first;
+            final int to = Math.min(first + chunkSize, all.size());
+            chunks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = from; i < to; i++)
+                        results[i] = parseOne(i, all.get(i));
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> chunk : executor.invokeAll(chunks))
+                chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            // failures are kept in the results, only errors get here
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private ParseResult parseOne(int index, CharSequence source) {
+        try {
+            return new ParseResult(index, source, parse(source), null);
+        } catch (RuntimeException e) {
+            return new ParseResult(index, source, null, e);
+        }
+    }
+}
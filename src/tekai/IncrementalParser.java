@@ -0,0 +1,255 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a source and its expression up to date as the source is edited, parsing
+ * again only the smallest expression around every edit.
+ * <p>
+ * Expressions keep the {@link Span} they were parsed from. On an edit, the deepest
+ * expression whose span strictly contains the edited region is parsed again (with the
+ * same parser and precedence, from the same start). If it doesn't end where the old one
+ * ended (now moved by the edit), or gives another type, its parent is tried, and so on
+ * up to the root, which means a full parse. Everything else is reused.
+ * </p>
+ * <p>
+ * Reused expressions keep pointing into the source they were parsed from; every edit
+ * made since then is kept to find where they are now. Every {@value #MAX_EDITS} edits
+ * the spans are moved to the current source and the edits forgotten. After an edit that
+ * left the source unparseable, the next edit parses everything again.
+ * </p>
+ */
+public final class IncrementalParser {
+
+    static final int MAX_EDITS = 32;
+
+    private final Parser parser;
+    private CharSequence source;
+    private Expression expression;
+    private Expression lastParsed;
+
+    // edits[i] turned the source of version i into the one of version i + 1
+    private final Map<CharSequence, Integer> versions = new IdentityHashMap<CharSequence, Integer>();
+    private final List<int[]> edits = new ArrayList<int[]>();
+
+    /**
+     * @throws UnparseableException
+     */
+    public IncrementalParser(Parser parser, CharSequence source) {
+        this.parser = parser;
+        parseAll(source);
+    }
+
+    // == Accessors ==
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * Expression of the current source, null if the last edit left it unparseable.
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Expression parsed by the last edit (the whole expression if everything was parsed again).
+     */
+    public Expression getLastParsed() {
+        return lastParsed;
+    }
+
+    // == Edits ==
+
+    /**
+     * Replaces <code>removedLength</code> characters at <code>offset</code> by the inserted ones.
+     * @throws UnparseableException if the source can't be parsed anymore
+     */
+    public Expression edit(int offset, int removedLength, CharSequence inserted) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length())
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removedLength) + ") out of source with length " + source.length());
+
+        String edited = new StringBuilder(source.length() - removedLength + inserted.length())
+            .append(source, 0, offset)
+            .append(inserted)
+            .append(source, offset + removedLength, source.length())
+            .toString();
+
+        if (expression == null) return parseAll(edited);
+        if (edits.size() >= MAX_EDITS) rebase();
+
+        Damage damage = new Damage(offset, offset + removedLength);
+        locate(expression, damage);
+
+        edits.add(new int[] {offset, removedLength, inserted.length()});
+        versions.put(edited, edits.size());
+        source = edited;
+
+        int delta = inserted.length() - removedLength;
+        for (int i = damage.path.size() - 1; i >= 0; i--) {
+            int[] extent = damage.extents.get(i);
+            if (extent == null) continue;
+
+            Expression reparsed = parseAgain(damage.path.get(i), extent[0], extent[1] + delta);
+            if (reparsed != null) {
+                expression = replace(damage, i, reparsed, delta);
+                lastParsed = reparsed;
+                return expression;
+            }
+        }
+
+        return parseAll(edited);
+    }
+
+    private Expression parseAll(CharSequence source) {
+        this.source = source;
+        versions.clear();
+        edits.clear();
+        versions.put(source, 0);
+
+        expression = null;
+        expression = parser.parse(source);
+        lastParsed = expression;
+        return expression;
+    }
+
+    /**
+     * Moves every span to the current source, so older sources and edits can be forgotten.
+     * <p>
+     * Spans of reused expressions are shared with the expressions returned before; the
+     * text they cover is the same in the current source.
+     * </p>
+     */
+    private void rebase() {
+        rebase(expression);
+        versions.clear();
+        edits.clear();
+        versions.put(source, 0);
+    }
+
+    private void rebase(Expression expression) {
+        Span span = expression.getSpan();
+        if (span != null && span.getSource() != source) {
+            Integer version = versions.get(span.getSource());
+            if (version != null)
+                expression.setSpan(new Span(source, map(span.getStart(), version), map(span.getEnd(), version), span.parser, span.precedence));
+        }
+
+        for (Expression child : expression.getChildren())
+            rebase(child);
+    }
+
+    /**
+     * Finds the expressions from the root down to the deepest one around the damage.
+     */
+    private void locate(Expression expression, Damage damage) {
+        int[] extent = extent(expression);
+        if (extent == null || !damage.isInside(extent)) return;
+
+        damage.path.add(expression);
+        damage.extents.add(expression.getSpan() == null ? null : extent);
+
+        for (int i = 0; i < expression.getChildCount(); i++) {
+            Expression child = expression.getChild(i);
+            int[] childExtent = extent(child);
+            if (childExtent != null && damage.isInside(childExtent)) {
+                damage.indexes.add(i);
+                locate(child, damage);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Where the expression is in the current source, null if unknown. Expressions
+     * without a span are where their children are.
+     */
+    private int[] extent(Expression expression) {
+        Span span = expression.getSpan();
+        if (span != null) {
+            Integer version = versions.get(span.getSource());
+            if (version == null) return null;
+            return new int[] {map(span.getStart(), version), map(span.getEnd(), version)};
+        }
+
+        int[] result = null;
+        for (Expression child : expression.getChildren()) {
+            int[] extent = extent(child);
+            if (extent == null) return null;
+            if (result == null)
+                result = extent;
+            else
+                result[1] = extent[1];
+        }
+        return result;
+    }
+
+    /**
+     * Position in the current source of a position in the source of the version.
+     */
+    private int map(int position, int version) {
+        for (int i = version; i < edits.size(); i++) {
+            int[] edit = edits.get(i);
+            if (position >= edit[0] + edit[1]) position += edit[2] - edit[1];
+        }
+        return position;
+    }
+
+    private Expression parseAgain(Expression old, int start, int end) {
+        Span span = old.getSpan();
+        Source edited = new Source(source, start);
+        ParseContext context = ParseContext.open(edited);
+        try {
+            Expression result = span.parser.parse(span.precedence);
+            if (result == null || edited.getCursor() != end) return null;
+            if (result.getType() == null ? old.getType() != null : !result.getType().equals(old.getType())) return null;
+            return result;
+        } catch (UnparseableException e) {
+            return null;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Copies the expressions above the reparsed one, moving the end of their spans.
+     */
+    private Expression replace(Damage damage, int depth, Expression reparsed, int delta) {
+        Expression result = reparsed;
+        for (int i = depth - 1; i >= 0; i--) {
+            Expression parent = damage.path.get(i);
+            int[] extent = damage.extents.get(i);
+            Span span = extent == null
+                ? null
+                : new Span(source, extent[0], extent[1] + delta, parent.getSpan().parser, parent.getSpan().precedence);
+            result = parent.withChild(damage.indexes.get(i), result, span);
+        }
+        return result;
+    }
+
+    // == Helper classes
+
+    private static class Damage {
+        private final int start;
+        private final int end;
+        private final List<Expression> path = new ArrayList<Expression>();
+        private final List<int[]> extents = new ArrayList<int[]>();
+        private final List<Integer> indexes = new ArrayList<Integer>();
+
+        private Damage(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Edits touching the borders may change what is around, so only strictly inside counts.
+         */
+        private boolean isInside(int[] extent) {
+            return extent[0] < start && end < extent[1];
+        }
+    }
+}
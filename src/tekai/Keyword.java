@@ -0,0 +1,129 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Case insensitive keywords written with {@link Helpers#word(String)}, like
+ * <code>\b((?i)group\s+by)\b</code> or <code>\b((?i)asc|desc)\b</code>, matched
+ * by comparing characters instead of running the regular expression.
+ * <p>
+ * The result is the same the regular expression gives: alternatives are tried in order,
+ * words are separated by one or more spaces ("\s") and letters are compared ignoring
+ * case in US-ASCII only. Whether a character past the end of the keyword is a word
+ * character depends on the JDK for non ASCII characters, so in that case
+ * {@link #end(CharSequence, int)} says {@link #UNKNOWN} and the regular expression decides.
+ * </p>
+ */
+final class Keyword {
+
+    static final int UNKNOWN = -2;
+
+    private static final String PREFIX = "\\b((?i)";
+    private static final String SUFFIX = ")\\b";
+    private static final String SPACING = "\\s+";
+
+    private final String regularExpression;
+    private final char[][][] alternatives;
+
+    private Keyword(String regularExpression, char[][][] alternatives) {
+        this.regularExpression = regularExpression;
+        this.alternatives = alternatives;
+    }
+
+    /**
+     * Keyword of the regular expression, null if it's not only a list of words.
+     */
+    static Keyword of(String regularExpression) {
+        if (regularExpression == null) return null;
+        if (!regularExpression.startsWith(PREFIX) || !regularExpression.endsWith(SUFFIX)) return null;
+        if (regularExpression.length() <= PREFIX.length() + SUFFIX.length()) return null;
+
+        String inner = regularExpression.substring(PREFIX.length(), regularExpression.length() - SUFFIX.length());
+        List<char[][]> alternatives = new ArrayList<char[][]>();
+        for (String alternative : inner.split("\\|", -1)) {
+            String[] words = alternative.split(Pattern.quote(SPACING), -1);
+            char[][] lowerCase = new char[words.length][];
+            for (int i = 0; i < words.length; i++) {
+                if (!isWord(words[i])) return null;
+                lowerCase[i] = toLowerCase(words[i].toCharArray());
+            }
+            alternatives.add(lowerCase);
+        }
+
+        return new Keyword(regularExpression, alternatives.toArray(new char[alternatives.size()][][]));
+    }
+
+    private static boolean isWord(String word) {
+        if (word.isEmpty()) return false;
+        for (int i = 0; i < word.length(); i++)
+            if (!isWordCharacter(word.charAt(i))) return false;
+        return true;
+    }
+
+    private static char[] toLowerCase(char[] word) {
+        for (int i = 0; i < word.length; i++)
+            word[i] = toLowerCase(word[i]);
+        return word;
+    }
+
+    private static char toLowerCase(char character) {
+        return character >= 'A' && character <= 'Z' ? (char) (character + 'a' - 'A') : character;
+    }
+
+    private static boolean isWordCharacter(char character) {
+        return (character >= 'a' && character <= 'z')
+            || (character >= 'A' && character <= 'Z')
+            || (character >= '0' && character <= '9')
+            || character == '_';
+    }
+
+    String getRegularExpression() {
+        return regularExpression;
+    }
+
+    // == Matching ==
+
+    /**
+     * End of the keyword starting at the position, -1 if there is none, {@link #UNKNOWN}
+     * if only the regular expression can tell.
+     */
+    int end(CharSequence source, int start) {
+        for (char[][] words : alternatives) {
+            int end = end(source, start, words);
+            if (end < 0) continue;
+            if (end == source.length()) return end;
+
+            char next = source.charAt(end);
+            if (next >= 128) return UNKNOWN;
+            if (!isWordCharacter(next)) return end;
+        }
+        return -1;
+    }
+
+    private static int end(CharSequence source, int start, char[][] words) {
+        int position = start;
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) {
+                int spacing = position;
+                while (position < source.length() && FirstCharacters.isWhitespace(source.charAt(position)))
+                    position++;
+                if (position == spacing) return -1;
+            }
+
+            char[] word = words[i];
+            if (position + word.length > source.length()) return -1;
+            for (int j = 0; j < word.length; j++) {
+                if (toLowerCase(source.charAt(position + j)) != word[j]) return -1;
+            }
+            position += word.length;
+        }
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return regularExpression;
+    }
+}
@@ -0,0 +1,110 @@
+package tekai;
+
+/**
+ * State of a single call to {@link Parser#parse(CharSequence)}: the source (and its cursor)
+ * and the stack of parselets being executed.
+ * <p>
+ * Parsers and parselets keep no state of their own while parsing, they look for the
+ * context of the current thread, so the same grammar can parse in many threads at once.
+ * </p>
+ */
+final class ParseContext {
+
+    private static final ThreadLocal<ParseContext> CURRENT = new ThreadLocal<ParseContext>();
+
+    private final Source source;
+    private final ParseContext previous;
+    private final ParseStatistics statistics;
+    private Invocation invocation;
+    private int depth = 0;
+
+    private ParseContext(Source source, ParseContext previous, ParseStatistics statistics) {
+        this.source = source;
+        this.previous = previous;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Context of the parse running in this thread, null if there is none.
+     */
+    static ParseContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts a new parse in this thread, to be finished with {@link #close()}.
+     */
+    static ParseContext open(Source source) {
+        return open(source, null);
+    }
+
+    /**
+     * Same as {@link #open(Source)}, counting parselet lookups in the statistics (if not null).
+     */
+    static ParseContext open(Source source, ParseStatistics statistics) {
+        ParseContext context = new ParseContext(source, CURRENT.get(), statistics);
+        CURRENT.set(context);
+        return context;
+    }
+
+    void close() {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    /**
+     * Statistics of the parse, null if they are not being recorded.
+     */
+    ParseStatistics getStatistics() {
+        return statistics;
+    }
+
+    // == Parselet executions
+
+    Invocation enter(Parser parser, String match, Expression left) {
+        invocation = new Invocation(parser, match, left, invocation);
+        depth++;
+        return invocation;
+    }
+
+    void leave(Invocation finished) {
+        invocation = finished.previous;
+        depth--;
+    }
+
+    /**
+     * Number of parselets being executed.
+     */
+    int depth() {
+        return depth;
+    }
+
+    Invocation invocation() {
+        if (invocation == null) throw new IllegalStateException("No parselet being executed");
+        return invocation;
+    }
+
+    /**
+     * What a parselet sees while running its {@link Parselet#parse()}.
+     */
+    static final class Invocation {
+        final Parser parser;
+        final String match;
+        final Expression left;
+        Expression right;
+        private final Invocation previous;
+
+        private Invocation(Parser parser, String match, Expression left, Invocation previous) {
+            this.parser = parser;
+            this.match = match;
+            this.left = left;
+            this.previous = previous;
+        }
+    }
+}
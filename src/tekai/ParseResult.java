@@ -0,0 +1,56 @@
+package tekai;
+
+/**
+ * Outcome of parsing one source of a batch (see {@link Grammar#parseAll(Iterable)}):
+ * either the expression or the exception that stopped the parsing.
+ */
+public final class ParseResult {
+
+    private final int index;
+    private final CharSequence source;
+    private final Expression expression;
+    private final RuntimeException error;
+
+    ParseResult(int index, CharSequence source, Expression expression, RuntimeException error) {
+        this.index = index;
+        this.source = source;
+        this.expression = expression;
+        this.error = error;
+    }
+
+    /**
+     * Position of the source in the batch, starting at 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * Parsed expression, null if it failed.
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Why it failed (usually an {@link UnparseableException}), null if it didn't.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+            ? index + ": " + expression
+            : index + ": " + error.getMessage();
+    }
+}
@@ -0,0 +1,226 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of the rules of the parses of a {@link Parser}, to find out which
+ * ones are expensive. Enabled by {@link Parser#setStatistics(ParseStatistics)}.
+ * <p>
+ * For every parselet: how many times its starting expression was tried on the source
+ * (probes), how many times it matched, the time spent trying it, how many times it was
+ * executed, the time spent in {@link Parselet#parse()} (including the expressions parsed
+ * inside it) and how deep in other parselets it ran. With combined matching, the
+ * parselets of an alternation are tried at once: the probes and their time are counted
+ * for the alternation, the matches for the parselet that matched.
+ * </p>
+ * <p>
+ * Counters can be updated by many threads at once, and read (see {@link #snapshot()})
+ * while they are.
+ * </p>
+ */
+public final class ParseStatistics {
+
+    private final Map<Object, Counters> counters = new ConcurrentHashMap<Object, Counters>();
+
+    // == Recording ==
+
+    /**
+     * The rule (a parselet or an alternation) was tried on the source.
+     */
+    void probed(Object rule, long nanos) {
+        Counters counters = countersOf(rule);
+        counters.probes.increment();
+        counters.probeNanos.add(nanos);
+    }
+
+    void matched(Parselet parselet) {
+        countersOf(parselet).matches.increment();
+    }
+
+    void parsed(Parselet parselet, long nanos, int depth) {
+        Counters counters = countersOf(parselet);
+        counters.parses.increment();
+        counters.parseNanos.add(nanos);
+        counters.maxDepth.accumulate(depth);
+    }
+
+    private Counters countersOf(Object rule) {
+        Counters result = counters.get(rule);
+        if (result == null) {
+            Counters created = new Counters(describe(rule));
+            result = counters.putIfAbsent(rule, created);
+            if (result == null) result = created;
+        }
+        return result;
+    }
+
+    private static String describe(Object rule) {
+        if (rule instanceof Alternation)
+            return "combined " + ((Alternation) rule).getPattern().pattern();
+        Parselet parselet = (Parselet) rule;
+        Class<?> kind = parselet.getClass();
+        String name = kind.isAnonymousClass() ? kind.getName() : kind.getSimpleName();
+        return name + " " + parselet.startingRegularExpression();
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+
+    // == Reports ==
+
+    /**
+     * Current counters of every rule seen, the most expensive to try first.
+     */
+    public List<Entry> snapshot() {
+        List<Entry> result = new ArrayList<Entry>();
+        for (Counters counters : this.counters.values())
+            result.add(new Entry(counters));
+
+        Collections.sort(result, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                int byProbeTime = Long.compare(second.probeNanos, first.probeNanos);
+                return byProbeTime != 0 ? byProbeTime : Long.compare(second.parseNanos, first.parseNanos);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Snapshot as a table, one rule per line.
+     */
+    public String toText() {
+        StringBuilder result = new StringBuilder(String.format("%10s %10s %12s %10s %12s %6s  %s%n",
+            "probes", "matches", "probe ms", "parses", "parse ms", "depth", "rule"));
+        for (Entry entry : snapshot())
+            result.append(String.format("%10d %10d %12.3f %10d %12.3f %6d  %s%n",
+                entry.probes, entry.matches, entry.probeNanos / 1e6,
+                entry.parses, entry.parseNanos / 1e6, entry.maxDepth, entry.rule));
+        return result.toString();
+    }
+
+    /**
+     * Snapshot as a JSON array, one object per rule.
+     */
+    public String toJson() {
+        StringBuilder result = new StringBuilder("[");
+        for (Entry entry : snapshot()) {
+            if (result.length() > 1) result.append(',');
+            result.append("\n  {\"rule\": ");
+            appendJson(result, entry.rule);
+            result.append(", \"probes\": ").append(entry.probes)
+                .append(", \"matches\": ").append(entry.matches)
+                .append(", \"probeNanos\": ").append(entry.probeNanos)
+                .append(", \"parses\": ").append(entry.parses)
+                .append(", \"parseNanos\": ").append(entry.parseNanos)
+                .append(", \"maxDepth\": ").append(entry.maxDepth)
+                .append('}');
+        }
+        return result.append(result.length() > 1 ? "\n]" : "]").toString();
+    }
+
+    private static void appendJson(StringBuilder out, String string) {
+        out.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char character = string.charAt(i);
+            if (character == '"' || character == '\\')
+                out.append('\\').append(character);
+            else if (character < 0x20)
+                out.append(String.format("\\u%04x", (int) character));
+            else
+                out.append(character);
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    // == Helper classes
+
+    /**
+     * Counters of a rule at the time of the {@link ParseStatistics#snapshot()}.
+     */
+    public static final class Entry {
+        private final String rule;
+        private final long probes;
+        private final long matches;
+        private final long probeNanos;
+        private final long parses;
+        private final long parseNanos;
+        private final long maxDepth;
+
+        private Entry(Counters counters) {
+            this.rule = counters.rule;
+            this.probes = counters.probes.sum();
+            this.matches = counters.matches.sum();
+            this.probeNanos = counters.probeNanos.sum();
+            this.parses = counters.parses.sum();
+            this.parseNanos = counters.parseNanos.sum();
+            this.maxDepth = counters.maxDepth.get();
+        }
+
+        /**
+         * Kind of parselet and its starting regular expression.
+         */
+        public String getRule() {
+            return rule;
+        }
+
+        public long getProbes() {
+            return probes;
+        }
+
+        public long getMatches() {
+            return matches;
+        }
+
+        public long getProbeNanos() {
+            return probeNanos;
+        }
+
+        public long getParses() {
+            return parses;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        /**
+         * Most parselets being executed around this one at once (1 when run at the top).
+         */
+        public long getMaxDepth() {
+            return maxDepth;
+        }
+
+        @Override
+        public String toString() {
+            return rule + " (probes: " + probes + ", matches: " + matches + ", parses: " + parses + ")";
+        }
+    }
+
+    private static final class Counters {
+        private final String rule;
+        private final LongAdder probes = new LongAdder();
+        private final LongAdder matches = new LongAdder();
+        private final LongAdder probeNanos = new LongAdder();
+        private final LongAdder parses = new LongAdder();
+        private final LongAdder parseNanos = new LongAdder();
+        private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+        private Counters(String rule) {
+            this.rule = rule;
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package tekai;
 
-
+import java.util.regex.Pattern;
+
+import tekai.ParseContext.Invocation;
+
+/**
+ * A rule of the grammar.
+ * <p>
+ * Parselets keep no state between executions: the match, "left" and "right" seen by
+ * {@link #parse()} belong to the {@link ParseContext} of the running parse, so a
+ * parselet can be executed by many threads at once.
+ * </p>
+ */
 public abstract class Parselet {
 
     private int precedence;
     private Parser leftParser;
     private Parser parser;
-    private String match = "";
-    private Expression left;
-    private Expression right;
+    private volatile Pattern startingPattern;
+    private volatile Keyword startingKeyword;
+    private volatile boolean frozen = false;
 
     // == Construction ==
 
@@ -21,6 +32,7 @@ public abstract class Parselet {
     }
 
     public void setPrecedence(int precedence) {
+        checkNotFrozen();
         this.precedence = precedence;
     }
 
@@ -29,6 +41,7 @@ public abstract class Parselet {
     }
 
     public void setLeftParser(Parser leftParser) {
+        checkNotFrozen();
         this.leftParser = leftParser;
     }
 
@@ -37,15 +50,55 @@ public abstract class Parselet {
     }
 
     protected void setParser(Parser parser) {
+        checkNotFrozen();
         this.parser = parser;
     }
 
+    /**
+     * The parser it is registered in was frozen, so it can't be changed anymore.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("Parselet is in a frozen parser, it can't be changed");
+    }
+
+    /**
+     * Parser set by {@link #setParser(Parser)}, null if it runs in the parser it is registered in.
+     */
+    Parser getParser() {
+        return parser;
+    }
+
     // == Accessors to be used by Parse Engine ==
 
     public int getPrecedence() {
         return precedence;
     }
 
+    /**
+     * {@link #startingRegularExpression()} compiled once, at the first request
+     * (usually when the parselet is registered).
+     */
+    Pattern startingPattern() {
+        if (startingPattern == null) {
+            PatternCache.Entry entry = PatternCache.shared().entry(startingRegularExpression());
+            startingKeyword = entry.keyword;
+            startingPattern = entry.pattern;
+        }
+        return startingPattern;
+    }
+
+    /**
+     * {@link Keyword} of the {@link #startingRegularExpression()}, null if it's not one.
+     */
+    Keyword startingKeyword() {
+        startingPattern();
+        return startingKeyword;
+    }
+
     // == Commands to be used inside #parse() ==
 
     /**
@@ -55,6 +108,7 @@ public abstract class Parselet {
      * </p>
      */
     protected String originalMatch() {
+        String match = invocation().match;
         return match == null ? "" : match;
     }
 
@@ -67,13 +121,20 @@ public abstract class Parselet {
     }
 
     protected String lastMatch() {
-        assert parser != null;
-        return parser.lastMatch();
+        return invocation().parser.lastMatch();
+    }
+
+    /**
+     * Same as <code>new Expression(type, lastMatch())</code>, but the value is kept as
+     * a slice of the source instead of a copy of it.
+     */
+    protected Expression lastMatchAs(String type) {
+        return invocation().parser.getSource().lastMatchAs(type);
     }
 
     protected Expression left() {
         if (isPrefixParselet()) throw new RuntimeException("There is no \"left\" then in a prefix parser");
-        return left;
+        return invocation().left;
     }
 
     protected Expression right() {
@@ -81,8 +142,9 @@ public abstract class Parselet {
     }
 
     protected Expression right(int precedence) {
-        if (right == null) right = nextExpression(precedence);
-        return right;
+        Invocation invocation = invocation();
+        if (invocation.right == null) invocation.right = nextExpression(precedence);
+        return invocation.right;
     }
 
     protected Expression nextExpression() {
@@ -90,13 +152,11 @@ public abstract class Parselet {
     }
 
     protected Expression nextExpression(int precedence) {
-        assert parser != null;
-        return parser.parse(precedence);
+        return invocation().parser.parse(precedence);
     }
 
     protected void consumeIf(String regularExpression) {
-        assert parser != null;
-        parser.consumeIf(regularExpression);
+        invocation().parser.consumeIf(regularExpression);
     }
 
     protected boolean cannotConsume(String regularExpression) {
@@ -104,13 +164,11 @@ public abstract class Parselet {
     }
 
     protected boolean couldConsume(String regularExpression) {
-        assert parser != null;
-        return parser.couldConsume(regularExpression);
+        return invocation().parser.couldConsume(regularExpression);
     }
 
     protected boolean canConsume(String regularExpression) {
-        assert parser != null;
-        return parser.canConsume(regularExpression);
+        return invocation().parser.canConsume(regularExpression);
     }
 
     // == Calling method for #parse() that prepares the "environment"
@@ -120,15 +178,21 @@ public abstract class Parselet {
     }
 
     public Expression executeParsing(Parser parser, Expression left) {
-        if (this.parser == null) {
-            this.parser = parser;
-        } else {
-            this.parser.setSource(parser.getSource());
+        ParseContext context = ParseContext.current();
+        if (context == null) throw new IllegalStateException("Parselets are executed by Parser#parse");
+
+        Invocation invocation = context.enter(this.parser == null ? parser : this.parser, parser.lastMatch(), left);
+        try {
+            return parse();
+        } finally {
+            context.leave(invocation);
         }
-        this.match = parser.lastMatch();
-        this.left = left;
-        this.right = null;
-        return parse();
+    }
+
+    private Invocation invocation() {
+        ParseContext context = ParseContext.current();
+        if (context == null) throw new IllegalStateException("Parselet helpers can only be used inside #parse()");
+        return context.invocation();
     }
 
     // == To be implemented
@@ -0,0 +1,66 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parselets grouped by the first character their {@link Parselet#startingRegularExpression()}
+ * can match, keeping the registration order inside every group.
+ * <p>
+ * Parselets whose first characters are unknown (see {@link FirstCharacters}) are
+ * candidates for every character.
+ * </p>
+ */
+final class ParseletIndex {
+
+    private static final Parselet[] NONE = new Parselet[0];
+
+    private final Parselet[] all;
+    private final Parselet[] fallback;
+    private final Map<Character, Parselet[]> byFirstCharacter = new HashMap<Character, Parselet[]>();
+
+    ParseletIndex(List<Parselet> parselets) {
+        this.all = parselets.toArray(NONE);
+
+        List<Set<Character>> firsts = new ArrayList<Set<Character>>(all.length);
+        Set<Character> characters = new LinkedHashSet<Character>();
+        List<Parselet> fallback = new ArrayList<Parselet>();
+
+        for (Parselet parselet : all) {
+            Set<Character> first = FirstCharacters.of(parselet.startingRegularExpression());
+            firsts.add(first);
+            if (first == null)
+                fallback.add(parselet);
+            else
+                characters.addAll(first);
+        }
+
+        this.fallback = fallback.toArray(NONE);
+
+        for (Character character : characters) {
+            List<Parselet> candidates = new ArrayList<Parselet>();
+            for (int i = 0; i < all.length; i++)
+                if (firsts.get(i) == null || firsts.get(i).contains(character))
+                    candidates.add(all[i]);
+            byFirstCharacter.put(character, candidates.toArray(NONE));
+        }
+    }
+
+    /**
+     * Parselets that may match when the next non spacing character is the given one
+     * (-1 for end of source), in registration order.
+     */
+    Parselet[] candidates(int character) {
+        if (character < 0) return fallback;
+        Parselet[] candidates = byFirstCharacter.get((char) character);
+        return candidates == null ? fallback : candidates;
+    }
+
+    Parselet[] all() {
+        return all;
+    }
+}
@@ -4,7 +4,9 @@ import tekai.standard.AtomParselet;
 import tekai.standard.InfixParselet;
 import tekai.standard.PrefixParselet;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -16,6 +18,13 @@ public class Parser {
 
     private List<Parselet> prefixParselets = new LinkedList<Parselet>();
     private List<Parselet> parselets = new LinkedList<Parselet>();
+    private ParseletIndex prefixIndex = new ParseletIndex(prefixParselets);
+    private ParseletIndex index = new ParseletIndex(parselets);
+    private boolean combinedMatching = false;
+    private volatile ParseStatistics statistics;
+    private Alternation prefixAlternation;
+    private Alternation alternation;
+    private boolean frozen = false;
 
     // == Construction
 
@@ -27,11 +36,52 @@ public class Parser {
     }
 
     public void register(Parselet parselet) {
+        checkNotFrozen();
+        parselet.startingPattern();
+
         if (parselet.isPrefixParselet()) {
             prefixParselets.add(parselet);
+            prefixIndex = new ParseletIndex(prefixParselets);
         } else {
             parselets.add(parselet);
+            index = new ParseletIndex(parselets);
         }
+        buildAlternations();
+    }
+
+    /**
+     * When enabled, all prefix parselets (and, separately, all infix and postfix parselets)
+     * are tried with a single combined regular expression per token, instead of one
+     * expression per parselet. Registration order is still honoured.
+     * <p>
+     * Lists of parselets that can't be combined are still tried one by one.
+     * </p>
+     */
+    public void setCombinedMatching(boolean combinedMatching) {
+        checkNotFrozen();
+        this.combinedMatching = combinedMatching;
+        buildAlternations();
+    }
+
+    /**
+     * Statistics to record the rules of the parses started by this parser into, null
+     * (the default) to record nothing. Can be changed at any time, even when frozen.
+     */
+    public void setStatistics(ParseStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public ParseStatistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean isCombinedMatching() {
+        return combinedMatching;
+    }
+
+    private void buildAlternations() {
+        prefixAlternation = combinedMatching ? Alternation.of(prefixParselets) : null;
+        alternation = combinedMatching ? Alternation.of(parselets) : null;
     }
 
     public Rule rule(String type) {
@@ -50,26 +100,89 @@ public class Parser {
         register(new InfixParselet(1, tokenExpression, type, leftParser, rightParser));
     }
 
+    /**
+     * Stops accepting new rules in this parser and in every parser its parselets
+     * refer to, returning a {@link Grammar} that can be shared by many threads.
+     */
+    public Grammar freeze() {
+        freeze(Collections.newSetFromMap(new IdentityHashMap<Parser, Boolean>()));
+        return new Grammar(this);
+    }
+
+    private void freeze(Set<Parser> frozenParsers) {
+        if (!frozenParsers.add(this)) return;
+
+        frozen = true;
+        for (Parselet parselet : prefixParselets)
+            freeze(parselet, frozenParsers);
+        for (Parselet parselet : parselets)
+            freeze(parselet, frozenParsers);
+    }
+
+    private static void freeze(Parselet parselet, Set<Parser> frozenParsers) {
+        parselet.freeze();
+        if (parselet.getParser() != null) parselet.getParser().freeze(frozenParsers);
+        if (parselet.getLeftParser() != null) parselet.getLeftParser().freeze(frozenParsers);
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("Parser is frozen, no more rules can be added");
+    }
+
     // == Parse Engine ==
 
     /**
      * @throws UnparseableException
      */
     public Expression parse(CharSequence source) {
-        this.setSource(new Source(source));
-        return parse();
+        return parse(new Source(source));
+    }
+
+    /**
+     * Parses the source only to get its {@link Fingerprint}, where leaves of the literal
+     * types (made from a single token) are left out.
+     * @throws UnparseableException
+     */
+    public Fingerprint fingerprint(CharSequence source, String... literalTypes) {
+        Fingerprint.Builder fingerprint = new Fingerprint.Builder(literalTypes);
+        parse(source, fingerprint);
+        return fingerprint.build();
+    }
+
+    /**
+     * Same as {@link #parse(CharSequence)}, feeding the fingerprint while parsing.
+     */
+    Expression parse(CharSequence source, Fingerprint.Builder fingerprint) {
+        Source fingerprinted = new Source(source);
+        fingerprinted.setFingerprint(fingerprint);
+        return parse(fingerprinted);
     }
 
     /**
+     * Parses the source given to {@link #Parser(CharSequence)}.
      * @throws UnparseableException
      */
     public Expression parse() {
-        Expression result = parse(0);
+        if (source == null) return null;
+        return parse(source);
+    }
+
+    private Expression parse(Source source) {
+        ParseContext context = ParseContext.open(source, statistics);
+        try {
+            Expression result = parse(0);
 
-        if (getSource() != null && !"".equals(getSource().sample().trim()))
-            throw new UnparseableException("There are things to parse, but no rule for it: \"" + getSource().sample() + "\"");
+            if (getSource().hasRemainingNonWhitespace())
+                throw getSource().unparseable(UnparseableException.Problem.NO_RULE_FOR_REST, null);
 
-        return result;
+            return result;
+        } finally {
+            context.close();
+        }
     }
 
     /**
@@ -80,55 +193,124 @@ public class Parser {
         if (getSource() == null) return null;
         if (getSource().isEmpty()) return null;
 
+        ParseContext context = ParseContext.current();
+        ParseStatistics statistics = context == null ? null : context.getStatistics();
+
         Parselet currentParselet = findPrefixParselet();
 
         if (currentParselet == null)
-            if ("".equals(getSource().sample()))
-                throw new UnparseableException("Expected something to parse, but found end of source");
-            else
-                throw new UnparseableException("Could not find a then to parse \"" + getSource().sample() + "\"");
+            throw getSource().unparseable(UnparseableException.Problem.NO_RULE_FOR_NEXT, null);
 
+        int start = getSource().getCursor();
 
         consumeLastMatch();
-        Expression left = currentParselet.executeParsing(this);
+        Expression left = statistics == null
+            ? currentParselet.executeParsing(this)
+            : execute(currentParselet, null, context);
+        spanned(left, start, currentPrecedence);
+
+        Fingerprint.Builder fingerprint = getSource().getFingerprint();
+        if (fingerprint != null && left != null) fingerprint.produced(left, getSource().getCursor());
 
         Parselet nextParselet = findParselet();
 
         while (nextParselet != null && currentPrecedence < nextParselet.getPrecedence()) {
             consumeLastMatch();
-            left = nextParselet.executeParsing(this, left);
+            left = statistics == null
+                ? nextParselet.executeParsing(this, left)
+                : execute(nextParselet, left, context);
+            spanned(left, start, currentPrecedence);
             nextParselet = findParselet();
         }
 
         return left;
     }
 
+    /**
+     * Executes the parselet recording it in the statistics of the context.
+     */
+    private Expression execute(Parselet parselet, Expression left, ParseContext context) {
+        int depth = context.depth() + 1;
+        long start = System.nanoTime();
+        try {
+            return parselet.executeParsing(this, left);
+        } finally {
+            context.getStatistics().parsed(parselet, System.nanoTime() - start, depth);
+        }
+    }
+
+    /**
+     * Expressions keep the part of the source they came from, unless the parselet
+     * returned one that already has it.
+     */
+    private void spanned(Expression expression, int start, int precedence) {
+        if (expression == null || expression.getSpan() != null) return;
+        expression.setSpan(new Span(getSource().getText(), start, getSource().getCursor(), this, precedence));
+    }
+
     // == Helpers to Parse Engine ==
 
     private Parselet findParselet() {
-        for (Parselet parselet : parselets)
+        ParseContext context = ParseContext.current();
+        ParseStatistics statistics = context == null ? null : context.getStatistics();
+        return findParselet(index, alternation, statistics);
+    }
+
+    /**
+     * @param statistics to record every probe into, null if none
+     */
+    private Parselet findParselet(ParseletIndex index, Alternation alternation, ParseStatistics statistics) {
+        if (statistics != null) return findParseletRecording(index, alternation, statistics);
+
+        if (alternation != null) return getSource().matches(alternation);
+
+        for (Parselet parselet : index.candidates(getSource().nextSignificantCharacter()))
             if (sourceMatches(parselet))
                 return parselet;
         return null;
     }
 
+    private Parselet findParseletRecording(ParseletIndex index, Alternation alternation, ParseStatistics statistics) {
+        if (alternation != null) {
+            long start = System.nanoTime();
+            Parselet found = getSource().matches(alternation);
+            statistics.probed(alternation, System.nanoTime() - start);
+            if (found != null) statistics.matched(found);
+            return found;
+        }
+
+        for (Parselet parselet : index.candidates(getSource().nextSignificantCharacter())) {
+            long start = System.nanoTime();
+            boolean matches = sourceMatches(parselet);
+            statistics.probed(parselet, System.nanoTime() - start);
+            if (matches) {
+                statistics.matched(parselet);
+                return parselet;
+            }
+        }
+        return null;
+    }
+
     private Parselet findPrefixParselet() {
-        return findPrefixParselet(new HashSet<Parser>());
+        ParseContext context = ParseContext.current();
+        return findPrefixParselet(null, context == null ? null : context.getStatistics());
     }
-    
-    private Parselet findPrefixParselet(Set<Parser> usedParsers) {
-        for (Parselet parselet : prefixParselets)
-            if (sourceMatches(parselet))
-                return parselet;
+
+    /**
+     * @param usedParsers left parsers already tried, null if none
+     */
+    private Parselet findPrefixParselet(Set<Parser> usedParsers, ParseStatistics statistics) {
+        Parselet found = findParselet(prefixIndex, prefixAlternation, statistics);
+        if (found != null) return found;
 
         for (Parselet parselet : parselets) {
             Parser leftParser = parselet.getLeftParser();
             if (leftParser == null) break;
+            if (usedParsers == null) usedParsers = new HashSet<Parser>();
             if (usedParsers.contains(leftParser)) break;
             usedParsers.add(leftParser);
 
-            leftParser.setSource(getSource());
-            Parselet prefixParselet = leftParser.findPrefixParselet(usedParsers);
+            Parselet prefixParselet = leftParser.findPrefixParselet(usedParsers, statistics);
 
             if (prefixParselet != null)
                 return prefixParselet;
@@ -142,7 +324,8 @@ public class Parser {
     }
 
     private boolean sourceMatches(Parselet parselet) {
-        return getSource().matches(parselet.startingRegularExpression());
+        Keyword keyword = parselet.startingKeyword();
+        return keyword == null ? getSource().matches(parselet.startingPattern()) : getSource().matches(keyword);
     }
 
     // == Helpers to Parselets
@@ -163,8 +346,13 @@ public class Parser {
         getSource().consumeIf(regularExpression);
     }
 
+    /**
+     * Source of the parse running in this thread or, if there is none, the one
+     * given to {@link #Parser(CharSequence)}.
+     */
     public Source getSource() {
-        return source;
+        ParseContext context = ParseContext.current();
+        return context == null ? source : context.getSource();
     }
 
     public void setSource(Source source) {
@@ -0,0 +1,141 @@
+package tekai;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, thread-safe cache of the patterns used to probe a {@link Source}.
+ * <p>
+ * Keys are the regular expressions as written in the parselets, values are the
+ * compiled "spacing + expression" patterns {@link Source} actually runs (and, for
+ * keywords, the {@link Keyword} it runs instead).
+ * </p>
+ * <p>
+ * When full, a pattern not used since the last eviction went past it goes (the "clock"
+ * approximation of least recently used), so patterns in use aren't compiled over and
+ * over. Looking up a cached pattern only reads the map and counts the hit, in a
+ * {@link LongAdder} so threads don't contend on it.
+ * </p>
+ */
+public final class PatternCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final PatternCache SHARED = new PatternCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // == Construction ==
+
+    public PatternCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Cache used by every {@link Source} and {@link Parser}.
+     */
+    public static PatternCache shared() {
+        return SHARED;
+    }
+
+    // == Lookup ==
+
+    /**
+     * Compiled pattern for the regular expression, compiling it only on the first request.
+     */
+    public Pattern get(String regularExpression) {
+        return entry(regularExpression).pattern;
+    }
+
+    Entry entry(String regularExpression) {
+        Entry entry = entries.get(regularExpression);
+        if (entry != null) {
+            hits.increment();
+            if (!entry.used) entry.used = true;
+            return entry;
+        }
+
+        misses.increment();
+        entry = new Entry(compile(regularExpression), Keyword.of(regularExpression));
+
+        if (entries.size() >= capacity) evictOne();
+
+        Entry previous = entries.putIfAbsent(regularExpression, entry);
+        return previous == null ? entry : previous;
+    }
+
+    /**
+     * Evicts the first pattern not used since it was last passed, giving every used one
+     * passed a second chance (or the first one, if all of them were used).
+     */
+    private void evictOne() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.used) {
+                iterator.remove();
+                return;
+            }
+            entry.used = false;
+        }
+
+        iterator = entries.values().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    static Pattern compile(String regularExpression) {
+        return Pattern.compile("^(\\s*?)(" + regularExpression + ")");
+    }
+
+    // == Statistics ==
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        entries.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PatternCache(size: " + getSize() + "/" + capacity + ", hits: " + getHits() + ", misses: " + getMisses() + ")";
+    }
+
+    // == Helper classes
+
+    static final class Entry {
+        final Pattern pattern;
+        final Keyword keyword;
+        // used since the last eviction went past it
+        volatile boolean used = false;
+
+        private Entry(Pattern pattern, Keyword keyword) {
+            this.pattern = pattern;
+            this.keyword = keyword;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package tekai;
 
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
@@ -10,10 +11,14 @@ import java.util.List;
 public abstract class Printer {
 
     protected String printChildren(List<Expression> e) {
-        return printChildren(e, ",");
+        return printChildren(e, Separator.COMMA);
     }
 
     protected String printChildren(List<Expression> e, String separator) {
+        return printChildren(e, Separator.of(separator));
+    }
+
+    protected String printChildren(List<Expression> e, Separator separator) {
         StringBuilder result = new StringBuilder();
 
         String lastValue;
@@ -24,10 +29,7 @@ public abstract class Printer {
         }
 
         while (iterator.hasNext()) {
-            if (separator.matches("\\w+"))
-                result.append(" " + separator);
-            else
-                result.append(separator);
+            result.append(separator.getText());
 
             lastValue = print(iterator.next());
             result.append(lastValue);
@@ -37,4 +39,12 @@ public abstract class Printer {
     }
 
     public abstract String print(Expression e);
+
+    /**
+     * Prints into the given output; see {@link StreamingPrinter} for printers that
+     * don't make the string first.
+     */
+    public void print(Expression e, Appendable out) throws IOException {
+        out.append(print(e));
+    }
 }
@@ -0,0 +1,64 @@
+package tekai;
+
+import java.io.IOException;
+
+/**
+ * What goes between children printed by {@link Printer#printChildren(java.util.List, Separator)}.
+ * <p>
+ * Word separators ("AND", "IN") get a space before them, anything else (",", " ||") is
+ * printed as is. That is decided once, when the separator is made, so printing
+ * thousands of children makes no strings and runs no regular expressions.
+ * </p>
+ */
+public final class Separator {
+
+    public static final Separator COMMA = new Separator(",");
+    public static final Separator NOTHING = new Separator("");
+
+    private final String separator;
+    private final String text;
+
+    private Separator(String separator) {
+        this.separator = separator;
+        this.text = isWord(separator) ? " " + separator : separator;
+    }
+
+    public static Separator of(String separator) {
+        if (COMMA.separator.equals(separator)) return COMMA;
+        if (NOTHING.separator.equals(separator)) return NOTHING;
+        return new Separator(separator);
+    }
+
+    /**
+     * Same as <code>separator.matches("\\w+")</code>.
+     */
+    private static boolean isWord(String separator) {
+        if (separator.isEmpty()) return false;
+
+        for (int i = 0; i < separator.length(); i++) {
+            char character = separator.charAt(i);
+            boolean word = (character >= 'a' && character <= 'z')
+                        || (character >= 'A' && character <= 'Z')
+                        || (character >= '0' && character <= '9')
+                        || character == '_';
+            if (!word) return false;
+        }
+        return true;
+    }
+
+    /**
+     * What is actually printed between two children.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        out.append(text);
+    }
+
+    @Override
+    public String toString() {
+        return separator;
+    }
+}
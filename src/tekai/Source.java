@@ -1,5 +1,7 @@
 package tekai;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -8,35 +10,113 @@ class Source {
     private final CharSequence source;
     private int cursor = 0;
     private int newCursor = 0;
-    private String lastMatch;
-    private String lastSpacing;
+    private int lastSpacingStart = -1;
+    private int lastSpacingEnd = -1;
+    private int lastMatchStart = -1;
+    private int lastMatchEnd = -1;
+    private final Map<Pattern, Matcher> matchers = new IdentityHashMap<Pattern, Matcher>();
+    private Fingerprint.Builder fingerprint;
 
     public Source(CharSequence source) {
+        this(source, 0);
+    }
+
+    /**
+     * Source to be parsed from the given position on.
+     */
+    Source(CharSequence source, int cursor) {
         this.source = source == null ? "" : source;
+        this.cursor = cursor;
+        this.newCursor = cursor;
     }
 
     public boolean matches(String regularExpression) {
         if (cursor >= source.length()) return false;
 
-        Pattern pattern = Pattern.compile("^(\\s*?)(" + regularExpression + ")");
-        Matcher matcher = pattern.matcher(source);
-        matcher.useAnchoringBounds(true);
-        matcher.region(cursor, source.length());
+        PatternCache.Entry entry = PatternCache.shared().entry(regularExpression);
+        return entry.keyword == null ? matches(entry.pattern) : matches(entry.keyword);
+    }
 
-        if (!matcher.find()) return false;
+    /**
+     * Same as {@link #matches(String)} for the regular expression of the keyword,
+     * without running it unless the keyword can't tell.
+     */
+    boolean matches(Keyword keyword) {
+        if (cursor >= source.length()) return false;
 
-        lastSpacing = matcher.group(1);
-        lastMatch = lastMatchedGroup(matcher);
-        newCursor = matcher.end();
+        int start = cursor;
+        while (start < source.length() && FirstCharacters.isWhitespace(source.charAt(start)))
+            start++;
+
+        int end = keyword.end(source, start);
+        if (end == Keyword.UNKNOWN) return matches(PatternCache.shared().get(keyword.getRegularExpression()));
+        if (end < 0) return false;
+
+        lastSpacingStart = cursor;
+        lastSpacingEnd = start;
+        lastMatchStart = start;
+        lastMatchEnd = end;
+        newCursor = end;
+        return true;
+    }
+
+    /**
+     * Same as {@link #matches(String)}, for patterns already compiled by {@link PatternCache}.
+     */
+    public boolean matches(Pattern pattern) {
+        if (cursor >= source.length()) return false;
 
+        Matcher matcher = matcher(pattern);
+        if (!matcher.find()) return false;
+
+        matched(matcher, lastMatchedGroup(matcher));
         return true;
     }
 
-    private String lastMatchedGroup(Matcher matcher) {
+    /**
+     * Tries all expressions of the {@link Alternation} at once, returning the first
+     * parselet (in registration order) that matches or null if none does.
+     */
+    public Parselet matches(Alternation alternation) {
+        if (cursor >= source.length()) return null;
+
+        Matcher matcher = matcher(alternation.getPattern());
+        if (!matcher.find()) return null;
+
+        int matched = alternation.matched(matcher);
+        matched(matcher, alternation.lastMatchedGroup(matcher, matched));
+        return alternation.parselet(matched);
+    }
+
+    /**
+     * One reusable matcher per pattern, positioned at the cursor.
+     */
+    private Matcher matcher(Pattern pattern) {
+        Matcher matcher = matchers.get(pattern);
+        if (matcher == null) {
+            matcher = pattern.matcher(source);
+            matcher.useAnchoringBounds(true);
+            matchers.put(pattern, matcher);
+        }
+        return matcher.region(cursor, source.length());
+    }
+
+    /**
+     * Keeps only the offsets of the match, {@link #lastMatch()} makes the string when asked.
+     */
+    private void matched(Matcher matcher, int group) {
+        lastSpacingStart = matcher.start(1);
+        lastSpacingEnd = matcher.end(1);
+        lastMatchStart = matcher.start(group);
+        lastMatchEnd = matcher.end(group);
+        newCursor = matcher.end();
+    }
+
+    private int lastMatchedGroup(Matcher matcher) {
         for (int i = matcher.groupCount(); i >= 3; i--)
-            if (matcher.group(i) != null) return matcher.group(i);
+            if (matcher.start(i) >= 0) return i;
 
-        return matcher.group(2);
+        return 2;
     }
 
     public boolean couldConsume(String regularExpression) {
@@ -52,20 +132,46 @@ class Source {
         }
     }
 
+    /**
+     * @throws UnparseableException
+     */
     public void consumeIf(String regularExpression) {
-
         if (canConsume(regularExpression)) return;
+        throw unparseable(UnparseableException.Problem.EXPECTED, regularExpression);
+    }
+
+    /**
+     * Exception about what comes after the spacing at the cursor; its message is only made
+     * if someone asks for it.
+     */
+    UnparseableException unparseable(UnparseableException.Problem problem, String expected) {
+        return new UnparseableException(problem, source, significantStart(), expected);
+    }
 
-        if ("".equals(sample()))
-            throw new RuntimeException("Expected \"" + regularExpression + "\", but found end of source");
-        else
-            throw new RuntimeException("Expected \"" + regularExpression + "\", but found \"" + sample() + "\"");
+    int getCursor() {
+        return cursor;
+    }
+
+    CharSequence getText() {
+        return source;
     }
 
     public void consumeLastMatch() {
+        if (fingerprint != null) fingerprint.consumed(source, cursor, lastSpacingEnd, newCursor);
         cursor = newCursor;
     }
 
+    /**
+     * Fingerprint fed with the consumed text, null if none is being computed.
+     */
+    Fingerprint.Builder getFingerprint() {
+        return fingerprint;
+    }
+
+    void setFingerprint(Fingerprint.Builder fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     /**
      * Returns the last then matched by {@link #canConsume(String)}, {@link #consumeIf(String)} and {@link #matches(String)}.
      * <p>
@@ -73,7 +179,44 @@ class Source {
      * </p>
      */
     public String lastMatch() {
-        return lastMatch == null ? "" : lastSpacing + lastMatch;
+        if (lastMatchStart < 0) return "";
+        if (lastSpacingEnd == lastMatchStart) return source.subSequence(lastSpacingStart, lastMatchEnd).toString();
+        return source.subSequence(lastSpacingStart, lastSpacingEnd).toString() + source.subSequence(lastMatchStart, lastMatchEnd);
+    }
+
+    /**
+     * {@link #lastMatch()} as an expression that keeps offsets into the source instead of a copy.
+     */
+    Expression lastMatchAs(String type) {
+        if (lastMatchStart < 0) return new Expression(type, "");
+        if (lastSpacingEnd == lastMatchStart) return new Expression(type, source, lastSpacingStart, lastMatchEnd);
+        return new Expression(type, lastMatch());
+    }
+
+    /**
+     * First character after the spacing at the cursor, or -1 at the end of source.
+     */
+    public int nextSignificantCharacter() {
+        int start = significantStart();
+        return start < source.length() ? source.charAt(start) : -1;
+    }
+
+    /**
+     * Position of the first character after the spacing at the cursor, the length of the
+     * source if there is none.
+     */
+    private int significantStart() {
+        int start = cursor;
+        while (start < source.length() && FirstCharacters.isWhitespace(source.charAt(start)))
+            start++;
+        return start;
+    }
+
+    /**
+     * True if there is something besides spacing after the cursor.
+     */
+    public boolean hasRemainingNonWhitespace() {
+        return nextSignificantCharacter() >= 0;
     }
 
     public boolean isEmpty() {
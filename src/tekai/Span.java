@@ -0,0 +1,50 @@
+package tekai;
+
+/**
+ * Part of a source an expression was parsed from, spacing before it included.
+ * <p>
+ * Also keeps which parser, at which precedence, parsed it, so the expression can be
+ * parsed again (see {@link IncrementalParser}).
+ * </p>
+ */
+public final class Span {
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    final Parser parser;
+    final int precedence;
+
+    Span(CharSequence source, int start, int end, Parser parser, int precedence) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.parser = parser;
+        this.precedence = precedence;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getLength() {
+        return end - start;
+    }
+
+    public String getText() {
+        return source.subSequence(start, end).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
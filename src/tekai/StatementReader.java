@@ -0,0 +1,327 @@
+package tekai;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a script statement by statement, parsing each one as soon as it is complete,
+ * so only the largest statement (not the whole script) is ever kept in memory.
+ * <p>
+ * Statements end at the terminator (";" by default) or at a line holding only the line
+ * terminator (like "GO", ignoring case and spaces), unless they are inside 'strings',
+ * "quoted names", -- line comments or /* block comments *&#47;. Terminators, and the
+ * spaces and comments before the code, are not part of the statements; statements with
+ * nothing but spaces and comments are skipped. Comments inside a statement are blanked
+ * out (line breaks kept), so grammars don't need rules for them and offsets and lines
+ * stay the same.
+ * </p>
+ * <p>
+ * Every statement gives a {@link ParseResult}, in order, with its position in the script
+ * as index; a statement that can't be parsed doesn't stop the reading.
+ * </p>
+ */
+public final class StatementReader implements Iterator<ParseResult>, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+    private static final int QUOTED = 2;
+    private static final int LINE_COMMENT = 3;
+    private static final int BLOCK_COMMENT = 4;
+
+    private final Grammar grammar;
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private String terminator = ";";
+    private String lineTerminator = null;
+
+    private final StringBuilder statement = new StringBuilder();
+    private int state = CODE;
+    private int codeSince = 0;
+    private int lineStart = 0;
+    private boolean lineStartsInCode = true;
+    private int firstCode = -1;
+    private char previous = 0;
+
+    private int index = 0;
+    private ParseResult next;
+    private boolean finished = false;
+
+    // == Construction ==
+
+    public StatementReader(Grammar grammar, Reader reader) {
+        this.grammar = grammar;
+        this.reader = reader;
+    }
+
+    /**
+     * Reads a script already available as characters, like a
+     * {@link tekai.javaexpansions.MappedCharSequence} of a large file.
+     */
+    public StatementReader(Grammar grammar, CharSequence script) {
+        this(grammar, new CharSequenceReader(script));
+    }
+
+    /**
+     * Reads the channel (a file channel, for instance) decoding it with the charset.
+     */
+    public StatementReader(Grammar grammar, ReadableByteChannel channel, Charset charset) {
+        this(grammar, Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /**
+     * Text ending statements anywhere in a line, null for none.
+     */
+    public void setTerminator(String terminator) {
+        if (terminator != null && terminator.isEmpty()) throw new IllegalArgumentException("Empty terminator");
+        this.terminator = terminator;
+    }
+
+    public String getTerminator() {
+        return terminator;
+    }
+
+    /**
+     * Text ending statements when alone in a line, null for none.
+     */
+    public void setLineTerminator(String lineTerminator) {
+        if (lineTerminator != null && lineTerminator.trim().isEmpty()) throw new IllegalArgumentException("Empty line terminator");
+        this.lineTerminator = lineTerminator == null ? null : lineTerminator.trim();
+    }
+
+    public String getLineTerminator() {
+        return lineTerminator;
+    }
+
+    // == Iteration ==
+
+    /**
+     * @throws UncheckedIOException if the reader fails
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) next = read();
+        return next != null;
+    }
+
+    /**
+     * @throws UncheckedIOException if the reader fails
+     */
+    @Override
+    public ParseResult next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ParseResult result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.close();
+    }
+
+    // == Splitting ==
+
+    private ParseResult read() {
+        try {
+            String text;
+            do {
+                text = nextStatement();
+            } while (text != null && text.isEmpty());
+
+            if (text == null) {
+                finished = true;
+                return null;
+            }
+            return parse(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ParseResult parse(String text) {
+        int statementIndex = index++;
+        try {
+            return new ParseResult(statementIndex, text, grammar.parse(text), null);
+        } catch (RuntimeException e) {
+            return new ParseResult(statementIndex, text, null, e);
+        }
+    }
+
+    /**
+     * Text of the next statement from its first code on, empty if it has no code, null
+     * at the end of the script.
+     */
+    private String nextStatement() throws IOException {
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit < 0) {
+                    limit = 0;
+                    if (statement.length() == 0) return null;
+                    return finishLine() ? ended(lineStart) : ended(statement.length());
+                }
+            }
+
+            char character = buffer[position++];
+            statement.append(character);
+
+            if (character == '\n' && finishLine()) return ended(lineStart);
+            if (state == CODE && endsWithTerminator()) return ended(statement.length() - terminator.length());
+
+            scan(character);
+        }
+    }
+
+    /**
+     * Follows strings and comments; "-" and "/" are code only when not starting a comment.
+     */
+    private void scan(char character) {
+        int at = statement.length() - 1;
+        switch (state) {
+            case CODE:
+                if (character == '-' && previous == '-') {
+                    state = LINE_COMMENT;
+                    blank(at - 1);
+                    blank(at);
+                    break;
+                }
+                if (character == '*' && previous == '/') {
+                    state = BLOCK_COMMENT;
+                    blank(at - 1);
+                    blank(at);
+                    character = 0;
+                    break;
+                }
+
+                if (previous == '-' || previous == '/') code(at - 1);
+                if (character == '\'') state = STRING;
+                if (character == '"') state = QUOTED;
+                if (character != '-' && character != '/' && !FirstCharacters.isWhitespace(character)) code(at);
+                break;
+            case STRING:
+                if (character == '\'') backToCode();
+                break;
+            case QUOTED:
+                if (character == '"') backToCode();
+                break;
+            case LINE_COMMENT:
+                if (character == '\n') backToCode();
+                blank(at);
+                break;
+            case BLOCK_COMMENT:
+                blank(at);
+                if (character == '/' && previous == '*') {
+                    backToCode();
+                    character = 0;
+                }
+                break;
+        }
+        previous = character;
+    }
+
+    /**
+     * Replaces the character of a comment by a space, unless it breaks a line.
+     */
+    private void blank(int at) {
+        char character = statement.charAt(at);
+        if (character != '\n' && character != '\r') statement.setCharAt(at, ' ');
+    }
+
+    private void code(int at) {
+        if (firstCode < 0) firstCode = at;
+    }
+
+    private void backToCode() {
+        state = CODE;
+        codeSince = statement.length();
+    }
+
+    private boolean endsWithTerminator() {
+        if (terminator == null) return false;
+
+        int start = statement.length() - terminator.length();
+        if (start < codeSince) return false;
+        for (int i = 0; i < terminator.length(); i++)
+            if (statement.charAt(start + i) != terminator.charAt(i)) return false;
+        return true;
+    }
+
+    /**
+     * Checks whether the line just read is the line terminator, starting a new line if not.
+     */
+    private boolean finishLine() {
+        boolean terminates = lineTerminator != null
+            && lineStartsInCode
+            && state == CODE
+            && statement.substring(lineStart).trim().equalsIgnoreCase(lineTerminator);
+
+        if (!terminates) {
+            lineStart = statement.length();
+            lineStartsInCode = state == CODE || state == LINE_COMMENT;
+        }
+        return terminates;
+    }
+
+    /**
+     * Takes the statement ending at the position, leaving the reader ready for the next one.
+     */
+    private String ended(int end) {
+        // a "-" or "/" just before the end wasn't followed by a comment
+        if (state == CODE && (previous == '-' || previous == '/')) code(end - 1);
+        String result = firstCode >= 0 && firstCode < end ? statement.substring(firstCode, end) : "";
+
+        statement.setLength(0);
+        state = CODE;
+        codeSince = 0;
+        lineStart = 0;
+        lineStartsInCode = true;
+        firstCode = -1;
+        previous = 0;
+        return result;
+    }
+
+    // == Helper classes
+
+    private static class CharSequenceReader extends Reader {
+        private final CharSequence characters;
+        private int position = 0;
+
+        CharSequenceReader(CharSequence characters) {
+            this.characters = characters;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= characters.length()) return -1;
+
+            int count = Math.min(length, characters.length() - position);
+            for (int i = 0; i < count; i++)
+                buffer[offset + i] = characters.charAt(position++);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            position = characters.length();
+        }
+    }
+}
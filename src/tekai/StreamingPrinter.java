@@ -0,0 +1,86 @@
+package tekai;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link Printer} that writes straight into an {@link Appendable} (a
+ * {@link StringBuilder}, a {@link java.io.Writer}, a {@link java.nio.CharBuffer}...)
+ * instead of returning strings, so every character is copied once, however deep the tree.
+ * <p>
+ * Subclasses implement {@link #render(Expression, Appendable)} and print children
+ * with {@link #print(Expression, Appendable)}.
+ * </p>
+ * <p>
+ * Printers that print parsed trees back as they were may
+ * {@link #setCopyingSource(boolean) copy the source} of every expression that still
+ * has a {@link Span} (the ones no {@link Transformation} changed), in a single append.
+ * </p>
+ */
+public abstract class StreamingPrinter extends Printer {
+
+    private boolean copyingSource = false;
+
+    /**
+     * Prints the expression as {@link #render(Expression, Appendable)} does.
+     */
+    @Override
+    public void print(Expression e, Appendable out) throws IOException {
+        Span span = copyingSource ? e.getSpan() : null;
+        if (span == null)
+            render(e, out);
+        else
+            out.append(span.getSource(), span.getStart(), span.getEnd());
+    }
+
+    protected abstract void render(Expression e, Appendable out) throws IOException;
+
+    public void setCopyingSource(boolean copyingSource) {
+        this.copyingSource = copyingSource;
+    }
+
+    public boolean isCopyingSource() {
+        return copyingSource;
+    }
+
+    @Override
+    public String print(Expression e) {
+        StringBuilder result = new StringBuilder();
+        try {
+            print(e, result);
+        } catch (IOException ex) {
+            throw new IllegalStateException("StringBuilder doesn't throw IOException", ex);
+        }
+        return result.toString();
+    }
+
+    // == Helpers ==
+
+    protected void printChildren(List<Expression> e, Appendable out) throws IOException {
+        printChildren(e, Separator.COMMA, out);
+    }
+
+    protected void printChildren(List<Expression> e, String separator, Appendable out) throws IOException {
+        printChildren(e, Separator.of(separator), out);
+    }
+
+    protected void printChildren(List<Expression> e, Separator separator, Appendable out) throws IOException {
+        Iterator<Expression> iterator = e.iterator();
+        if (iterator.hasNext())
+            print(iterator.next(), out);
+
+        while (iterator.hasNext()) {
+            separator.appendTo(out);
+
+            print(iterator.next(), out);
+        }
+    }
+
+    /**
+     * Same as <code>out.append(e.printValue())</code>, without making the string.
+     */
+    protected void printValue(Expression e, Appendable out) throws IOException {
+        e.printValue(out);
+    }
+}
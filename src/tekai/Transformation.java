@@ -2,27 +2,77 @@ package tekai;
 
 import static tekai.Expression.e;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Rewrites a tree, bottom up, with {@link #then(String, String, List)} at every node
+ * where {@link #when(Expression)} holds.
+ * <p>
+ * Trees are copied on write: subtrees where nothing changed are returned as the same
+ * instances, only the nodes from a changed one up to the root are new. The original
+ * and the transformed trees share nodes, so neither should be changed afterwards.
+ * </p>
+ */
 public abstract class Transformation {
 
     public Expression applyOn(Expression expression) {
-        LinkedList<Expression> transformedChildren = applyOn(expression.getChildren());
+        List<Expression> children = expression.getChildren();
+        List<Expression> transformedChildren = applyOn(children);
 
-        if (when(expression))
-            return then(expression.printValue(), expression.getType(), transformedChildren);
+        Transformation selected = select(expression);
+        if (selected != null)
+            return selected.then(expression.printValue(), expression.getType(), copyOf(children, transformedChildren));
+        else if (transformedChildren == children)
+            return expression;
         else
             return e(expression.printValue(), expression.getType(), transformedChildren);
     }
 
-    private LinkedList<Expression> applyOn(List<Expression> children) {
-        LinkedList<Expression> transformedChildren = new LinkedList<Expression>();
-        for (Expression child : children) {
+    /**
+     * The same list if no child changed, a new one otherwise.
+     */
+    private List<Expression> applyOn(List<Expression> children) {
+        List<Expression> transformedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Expression child = children.get(i);
             Expression newChild = applyOn(child);
-            if (newChild != null) transformedChildren.add(newChild);
+
+            if (transformedChildren == null && newChild != child)
+                transformedChildren = new ArrayList<Expression>(children.subList(0, i));
+
+            if (transformedChildren != null && newChild != null)
+                transformedChildren.add(newChild);
         }
-        return transformedChildren;
+        return transformedChildren == null ? children : transformedChildren;
+    }
+
+    /**
+     * {@link #then(String, String, List)} may change the list it gets, so it never gets
+     * the children of the original node.
+     */
+    private static List<Expression> copyOf(List<Expression> children, List<Expression> transformedChildren) {
+        return transformedChildren == children ? new ArrayList<Expression>(children) : transformedChildren;
+    }
+
+    /**
+     * Transformation whose {@link #then(String, String, List)} rewrites the expression,
+     * null if none applies.
+     * <p>
+     * Transformations made of others return the chosen one, so nothing has to be kept
+     * between {@link #when(Expression)} and {@link #then(String, String, List)}.
+     * </p>
+     */
+    public Transformation select(Expression expression) {
+        return when(expression) ? this : null;
+    }
+
+    /**
+     * Whether the rewrite may depend on the values of the leaves of the type, and not only
+     * on where they are in the tree. True unless the transformation knows it doesn't.
+     */
+    public boolean readsValuesOf(String type) {
+        return true;
     }
 
     public abstract boolean when(Expression expression);
@@ -0,0 +1,411 @@
+package tekai;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of translations: parse, transform and print, done once
+ * per distinct statement text.
+ * <p>
+ * Entries are spread over up to {@value #SEGMENTS} independently locked segments, each
+ * with its share of the capacity, so threads translating different statements rarely
+ * wait for each other. When a segment is full, its least recently used translation goes.
+ * A segment is locked only to look up or store, never while translating, so two threads
+ * missing the same statement at once may both translate it.
+ * </p>
+ * <p>
+ * With {@link #setLiteralTypes(String...) literal types}, statements not found by their
+ * text are parsed for their {@link Fingerprint}, and the translation of any statement
+ * with the same fingerprint is reused as a template, filled with the literals of the new
+ * statement. Literal types whose values the transformation may look at (see
+ * {@link Transformation#readsValuesOf(String)}, like a rule changing only the number 0)
+ * are left out, as are templates that filled with the literals they came from don't give
+ * their translation back.
+ * </p>
+ * <p>
+ * Statements that can't be parsed are not cached: the exception reaches the caller
+ * every time.
+ * </p>
+ */
+public final class TranslationCache {
+
+    static final int SEGMENTS = 16;
+
+    // rough bytes of a cached translation besides its characters (entry, strings, arrays)
+    private static final int ENTRY_OVERHEAD = 120;
+
+    // literal i is printed as HOLE_START i HOLE_END while making a template
+    private static final char HOLE_START = '\uE000';
+    private static final char HOLE_END = '\uE001';
+    private static final Template NO_TEMPLATE = new Template(new String[0], new int[0]);
+
+    private final Grammar grammar;
+    private final Transformation transformation;
+    private final Printer printer;
+    private final int capacity;
+    private final Segment<String, String>[] segments;
+    private final Segment<Fingerprint, Template>[] templates;
+    private volatile String[] literalTypes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder templateHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder templateEvictions = new LongAdder();
+
+    // == Construction ==
+
+    /**
+     * The transformation and printer are shared by every thread translating with the cache.
+     * @param transformation applied before printing, null for none
+     */
+    public TranslationCache(Grammar grammar, Transformation transformation, Printer printer, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.grammar = grammar;
+        this.transformation = transformation;
+        this.printer = printer;
+        this.capacity = capacity;
+
+        this.segments = segments(capacity, evictions);
+        this.templates = segments(capacity, templateEvictions);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Segment<K, V>[] segments(int capacity, LongAdder evictions) {
+        // a power of two, for segmentOf
+        int count = Integer.highestOneBit(Math.min(SEGMENTS, capacity));
+        Segment<K, V>[] result = new Segment[count];
+        for (int i = 0; i < count; i++)
+            result[i] = new Segment<K, V>(capacity / count + (i < capacity % count ? 1 : 0), evictions);
+        return result;
+    }
+
+    /**
+     * Types of the leaves that are literals (like "NUMBER" and "STRING"), to reuse
+     * translations as templates; none (the default) to only reuse translations of the
+     * same text.
+     */
+    public void setLiteralTypes(String... literalTypes) {
+        this.literalTypes = literalTypes.length == 0 ? null : literalTypes.clone();
+    }
+
+    public String[] getLiteralTypes() {
+        String[] literalTypes = this.literalTypes;
+        return literalTypes == null ? new String[0] : literalTypes.clone();
+    }
+
+    // == Translation ==
+
+    /**
+     * Printed translation of the statement, made only if it's not in the cache.
+     * @throws UnparseableException
+     */
+    public String translate(CharSequence statement) {
+        String key = statement.toString();
+        Segment<String, String> segment = segmentOf(segments, key);
+
+        String cached = segment.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        String[] literalTypes = templateTypes();
+        String translated;
+        if (literalTypes == null) {
+            misses.increment();
+            translated = translateAgain(grammar.parse(key));
+        } else {
+            translated = translateByTemplate(key, literalTypes);
+        }
+        segment.put(key, translated);
+        return translated;
+    }
+
+    /**
+     * Literal types whose values the transformation doesn't look at, null if none.
+     * Asked at every miss, as rules may still be registered.
+     */
+    private String[] templateTypes() {
+        String[] literalTypes = this.literalTypes;
+        if (literalTypes == null || transformation == null) return literalTypes;
+
+        List<String> result = new ArrayList<String>(literalTypes.length);
+        for (String type : literalTypes)
+            if (!transformation.readsValuesOf(type)) result.add(type);
+        return result.isEmpty() ? null : result.toArray(new String[result.size()]);
+    }
+
+    private String translateByTemplate(String statement, String[] literalTypes) {
+        Fingerprint.Builder builder = new Fingerprint.Builder(literalTypes);
+        Expression expression = grammar.parse(statement, builder);
+        Fingerprint fingerprint = builder.build();
+
+        Segment<Fingerprint, Template> segment = segmentOf(templates, fingerprint);
+        Template template = segment.get(fingerprint);
+        if (template != null && template != NO_TEMPLATE) {
+            String filled = template.fill(fingerprint.getLiterals());
+            if (filled != null) {
+                templateHits.increment();
+                return filled;
+            }
+        }
+
+        misses.increment();
+        String translated = translateAgain(expression);
+        if (template == null) {
+            template = Template.of(translateAgain(withHoles(expression, builder.getLiteralExpressions())));
+            if (template == null || !translated.equals(template.fill(fingerprint.getLiterals()))) template = NO_TEMPLATE;
+            segment.put(fingerprint.withoutLiterals(), template);
+        }
+        return translated;
+    }
+
+    private String translateAgain(Expression expression) {
+        if (transformation != null) expression = transformation.applyOn(expression);
+        return printer.print(expression);
+    }
+
+    /**
+     * Copy of the expression with the value of every literal replaced by its hole.
+     */
+    private Expression withHoles(Expression expression, List<Expression> literals) {
+        Map<Expression, Integer> holes = new IdentityHashMap<Expression, Integer>();
+        for (int i = 0; i < literals.size(); i++)
+            holes.put(literals.get(i), i);
+        return withHoles(expression, holes);
+    }
+
+    private Expression withHoles(Expression expression, Map<Expression, Integer> holes) {
+        Integer hole = holes.get(expression);
+        String value = hole == null ? expression.printValue() : expression.getSpacing() + HOLE_START + hole + HOLE_END;
+
+        Expression result = new Expression(expression.getType(), value);
+        List<Expression> children = new ArrayList<Expression>(expression.getChildCount());
+        for (Expression child : expression.getChildren())
+            children.add(withHoles(child, holes));
+        result.addChildren(children);
+        return result;
+    }
+
+    private static <K, V> Segment<K, V> segmentOf(Segment<K, V>[] segments, K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    // == Statistics ==
+
+    /**
+     * Translations found in the cache, by text or by template.
+     */
+    public long getHits() {
+        return hits.sum() + templateHits.sum();
+    }
+
+    /**
+     * Translations made filling a template, see {@link #setLiteralTypes(String...)}.
+     */
+    public long getTemplateHits() {
+        return templateHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Hits over lookups, 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Translations evicted, not counting templates.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Templates evicted, see {@link #setLiteralTypes(String...)}.
+     */
+    public long getTemplateEvictions() {
+        return templateEvictions.sum();
+    }
+
+    public int getSize() {
+        int result = 0;
+        for (Segment<String, String> segment : segments)
+            result += segment.size();
+        return result;
+    }
+
+    /**
+     * Number of statement fingerprints known, with or without a usable template.
+     */
+    public int getTemplateCount() {
+        int result = 0;
+        for (Segment<Fingerprint, Template> segment : templates)
+            result += segment.size();
+        return result;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Estimate of the heap taken by the cached statements and translations, in bytes.
+     */
+    public long getMemorySize() {
+        long result = 0;
+        for (Segment<String, String> segment : segments)
+            result += segment.memorySize();
+        for (Segment<Fingerprint, Template> segment : templates)
+            result += segment.memorySize();
+        return result;
+    }
+
+    public void clear() {
+        for (Segment<String, String> segment : segments)
+            segment.clear();
+        for (Segment<Fingerprint, Template> segment : templates)
+            segment.clear();
+        hits.reset();
+        templateHits.reset();
+        misses.reset();
+        evictions.reset();
+        templateEvictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationCache(size: " + getSize() + "/" + capacity
+            + ", hits: " + getHits() + ", template hits: " + getTemplateHits() + ", misses: " + getMisses()
+            + ", evictions: " + getEvictions() + ", template evictions: " + getTemplateEvictions() + ", memory: " + getMemorySize() + " bytes)";
+    }
+
+    // == Helper classes
+
+    /**
+     * Translated statement with holes for its literals.
+     */
+    private static final class Template {
+        private final String[] parts;
+        private final int[] holes;
+
+        private Template(String[] parts, int[] holes) {
+            this.parts = parts;
+            this.holes = holes;
+        }
+
+        /**
+         * Template of a translation printed with holes, null if the holes are broken.
+         */
+        static Template of(String printed) {
+            List<String> parts = new ArrayList<String>();
+            List<Integer> holes = new ArrayList<Integer>();
+
+            int partStart = 0;
+            for (int start = printed.indexOf(HOLE_START); start >= 0; start = printed.indexOf(HOLE_START, partStart)) {
+                int end = printed.indexOf(HOLE_END, start);
+                if (end < 0) return null;
+                try {
+                    holes.add(Integer.parseInt(printed.substring(start + 1, end)));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                parts.add(printed.substring(partStart, start));
+                partStart = end + 1;
+            }
+            parts.add(printed.substring(partStart));
+
+            int[] result = new int[holes.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = holes.get(i);
+            return new Template(parts.toArray(new String[parts.size()]), result);
+        }
+
+        /**
+         * Translation with the literals in its holes, null if there are not enough of them.
+         */
+        String fill(List<String> literals) {
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < holes.length; i++) {
+                if (holes[i] >= literals.size()) return null;
+                result.append(parts[i]).append(literals.get(holes[i]));
+            }
+            return result.append(parts[holes.length]).toString();
+        }
+
+        long memorySize() {
+            long result = 4L * holes.length;
+            for (String part : parts)
+                result += 40 + 2L * part.length();
+            return result;
+        }
+    }
+
+    private static final class Segment<K, V> {
+        private final int capacity;
+        private final LongAdder evictions;
+        private long memorySize = 0;
+        private final LinkedHashMap<K, V> translations = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= Segment.this.capacity) return false;
+                memorySize -= memorySize(eldest.getKey(), eldest.getValue());
+                evictions.increment();
+                return true;
+            }
+        };
+
+        Segment(int capacity, LongAdder evictions) {
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        synchronized V get(K statement) {
+            return translations.get(statement);
+        }
+
+        synchronized void put(K statement, V translation) {
+            V previous = translations.put(statement, translation);
+            if (previous != null) memorySize -= memorySize(statement, previous);
+            memorySize += memorySize(statement, translation);
+        }
+
+        synchronized int size() {
+            return translations.size();
+        }
+
+        synchronized long memorySize() {
+            return memorySize;
+        }
+
+        synchronized void clear() {
+            translations.clear();
+            memorySize = 0;
+        }
+
+        private long memorySize(K statement, V translation) {
+            return ENTRY_OVERHEAD + memorySize(statement) + memorySize(translation);
+        }
+
+        private long memorySize(Object value) {
+            if (value instanceof String) return 2L * ((String) value).length();
+            if (value instanceof Template) return ((Template) value).memorySize();
+            if (value instanceof Fingerprint) return 2L * ((Fingerprint) value).getShape().length();
+            return 0;
+        }
+    }
+}
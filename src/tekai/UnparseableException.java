@@ -1,9 +1,116 @@
 package tekai;
 
+/**
+ * Source that could not be parsed.
+ * <p>
+ * Exceptions thrown by the parser keep where the problem happened and what was
+ * expected there. The message, line, column and snippet are only worked out when
+ * asked for, so failed parses that are just discarded cost no string building.
+ * </p>
+ */
 @SuppressWarnings("serial")
 public class UnparseableException extends RuntimeException {
 
+    private static final int SNIPPET_LENGTH = 20;
+
+    enum Problem { NO_RULE_FOR_REST, NO_RULE_FOR_NEXT, EXPECTED }
+
+    private final Problem problem;
+    private final transient CharSequence source;
+    private final int offset;
+    private final String expected;
+    private String message;
+
     public UnparseableException(String message) {
         super(message);
+        this.message = message;
+        this.problem = null;
+        this.source = null;
+        this.offset = -1;
+        this.expected = null;
+    }
+
+    UnparseableException(Problem problem, CharSequence source, int offset, String expected) {
+        this.problem = problem;
+        this.source = source;
+        this.offset = offset;
+        this.expected = expected;
+    }
+
+    // == Details ==
+
+    /**
+     * Position in the source where parsing stopped, -1 if unknown.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Line (starting at 1) where parsing stopped, -1 if unknown.
+     */
+    public int getLine() {
+        if (source == null) return -1;
+
+        int line = 1;
+        for (int i = 0; i < offset; i++)
+            if (isLineBreak(i)) line++;
+        return line;
+    }
+
+    /**
+     * Column (starting at 1) where parsing stopped, -1 if unknown.
+     */
+    public int getColumn() {
+        if (source == null) return -1;
+
+        int column = 1;
+        for (int i = offset - 1; i >= 0 && !isLineBreak(i); i--)
+            column++;
+        return column;
+    }
+
+    private boolean isLineBreak(int index) {
+        char character = source.charAt(index);
+        if (character == '\r') return index + 1 >= source.length() || source.charAt(index + 1) != '\n';
+        return character == '\n';
+    }
+
+    /**
+     * Regular expression that was expected at {@link #getOffset()}, null if none in particular.
+     */
+    public String getExpected() {
+        return expected;
+    }
+
+    /**
+     * A few characters of the source, starting at {@link #getOffset()}.
+     */
+    public String getSnippet() {
+        if (source == null) return "";
+        int end = Math.min(offset + SNIPPET_LENGTH, source.length());
+        return source.subSequence(offset, end).toString();
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) message = render();
+        return message;
+    }
+
+    private String render() {
+        String snippet = getSnippet();
+        switch (problem) {
+            case NO_RULE_FOR_REST:
+                return "There are things to parse, but no rule for it: \"" + snippet + "\"";
+            case NO_RULE_FOR_NEXT:
+                return snippet.isEmpty()
+                    ? "Expected something to parse, but found end of source"
+                    : "Could not find a then to parse \"" + snippet + "\"";
+            default:
+                return snippet.isEmpty()
+                    ? "Expected \"" + expected + "\", but found end of source"
+                    : "Expected \"" + expected + "\", but found \"" + snippet + "\"";
+        }
     }
 }
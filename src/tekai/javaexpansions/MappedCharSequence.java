@@ -0,0 +1,287 @@
+package tekai.javaexpansions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Characters of a memory mapped file, decoded as they are read: the file is never
+ * copied into the heap, and {@link #subSequence(int, int)} gives views over the same
+ * mapping.
+ * <p>
+ * US-ASCII and ISO-8859-1 files have one byte per character. UTF-8 files are scanned
+ * once when opened, keeping the byte position of every {@value #CHECKPOINT}th
+ * character, so reaching any character decodes at most that many. Every view remembers
+ * the last character it read, and reading near it, forward or back (what regular
+ * expressions and parsers mostly do), only steps over the bytes in between. Malformed
+ * UTF-8 bytes read as U+FFFD, one per byte.
+ * </p>
+ * <p>
+ * Views can be read by many threads. Each view has its own last character, so threads
+ * reading different views (statements of a script, say) don't move each other's.
+ * </p>
+ * <p>
+ * Files are limited to {@link Integer#MAX_VALUE} bytes. The mapping lasts until the
+ * sequence (and every view of it) is garbage collected.
+ * </p>
+ */
+public final class MappedCharSequence implements CharSequence {
+
+    static final int CHECKPOINT = 1024;
+
+    private static final char REPLACEMENT = '\uFFFD';
+    // smallest code point that needs that many bytes (anything smaller is malformed)
+    private static final int[] MINIMUM = {0, 0, 0x80, 0x800, 0x10000};
+
+    private final Characters characters;
+    private final int start;
+    private final int length;
+    // position of the last character read, see Characters#seek
+    private volatile long last;
+
+    private MappedCharSequence(Characters characters, int start, int length, long last) {
+        this.characters = characters;
+        this.start = start;
+        this.length = length;
+        this.last = last;
+    }
+
+    // == Construction ==
+
+    /**
+     * Maps the file, which must be in US-ASCII, ISO-8859-1 or UTF-8.
+     */
+    public static MappedCharSequence open(Path file, Charset charset) throws IOException {
+        boolean singleByte = charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII);
+        if (!singleByte && !charset.equals(StandardCharsets.UTF_8))
+            throw new IllegalArgumentException("Only US-ASCII, ISO-8859-1 and UTF-8 files can be mapped, not " + charset);
+
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File too large to be mapped: " + file + " (" + channel.size() + " bytes)");
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        Characters characters = singleByte ? new SingleByte(bytes) : new Utf8(bytes);
+        return new MappedCharSequence(characters, 0, characters.length(), 0);
+    }
+
+    // == CharSequence ==
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+
+        long from = last;
+        long position = characters.seek(from, start + index);
+        if (position != from) last = position;
+        return characters.charAt(position);
+    }
+
+    /**
+     * View of the characters, sharing the mapping.
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to)
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of length " + length);
+        return new MappedCharSequence(characters, start + from, to - from, last);
+    }
+
+    @Override
+    public String toString() {
+        return characters.toString(last, start, start + length);
+    }
+
+    // == Helper classes
+
+    private interface Characters {
+        int length();
+
+        /**
+         * Position of the character at the index, found from the position of another one.
+         */
+        long seek(long from, int index);
+
+        char charAt(long position);
+
+        String toString(long from, int start, int end);
+    }
+
+    private static final class SingleByte implements Characters {
+
+        private final ByteBuffer bytes;
+
+        SingleByte(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public long seek(long from, int index) {
+            return index;
+        }
+
+        @Override
+        public char charAt(long position) {
+            return (char) (bytes.get((int) position) & 0xFF);
+        }
+
+        @Override
+        public String toString(long from, int start, int end) {
+            byte[] copy = new byte[end - start];
+            ByteBuffer slice = bytes.duplicate();
+            slice.position(start);
+            slice.get(copy);
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final class Utf8 implements Characters {
+
+        private final ByteBuffer bytes;
+        private final int length;
+        // byte position of every CHECKPOINT-th character, times 2, plus 1 for the low half of a pair
+        private final long[] checkpoints;
+
+        Utf8(ByteBuffer bytes) {
+            this.bytes = bytes;
+
+            long[] checkpoints = new long[bytes.limit() / CHECKPOINT + 1];
+            int count = 0;
+            int character = 0;
+            int position = 0;
+            while (position < bytes.limit()) {
+                int size = size(position);
+                int chars = size == 4 ? 2 : 1;
+                for (int half = 0; half < chars; half++, character++)
+                    if (character % CHECKPOINT == 0) checkpoints[count++] = (long) position * 2 + half;
+                position += size;
+            }
+
+            this.length = character;
+            this.checkpoints = Arrays.copyOf(checkpoints, count);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Positions are packed as character << 32 | byte position << 1 | half (of a
+         * surrogate pair).
+         */
+        @Override
+        public long seek(long from, int index) {
+            int character = (int) (from >>> 32);
+            int position = (int) (from >>> 1) & Integer.MAX_VALUE;
+            int half = (int) from & 1;
+
+            int fromCheckpoint = index % CHECKPOINT;
+            if (Math.abs(index - character) > fromCheckpoint) {
+                long checkpoint = checkpoints[index / CHECKPOINT];
+                character = index - fromCheckpoint;
+                position = (int) (checkpoint / 2);
+                half = (int) (checkpoint % 2);
+            }
+
+            while (character < index) {
+                int size = size(position);
+                if (size == 4 && half == 0) {
+                    half = 1;
+                } else {
+                    position += size;
+                    half = 0;
+                }
+                character++;
+            }
+
+            while (character > index) {
+                if (half == 1) {
+                    half = 0;
+                } else {
+                    // back over continuation bytes to the lead one, unless they are malformed
+                    int previous = position - 1;
+                    while (previous > 0 && previous > position - 4 && (bytes.get(previous) & 0xC0) == 0x80)
+                        previous--;
+                    int size = size(previous);
+                    if (previous + size != position) {
+                        previous = position - 1;
+                        size = 1;
+                    }
+                    position = previous;
+                    half = size == 4 ? 1 : 0;
+                }
+                character--;
+            }
+
+            return (long) character << 32 | (long) position << 1 | half;
+        }
+
+        @Override
+        public char charAt(long position) {
+            return decode((int) (position >>> 1) & Integer.MAX_VALUE, (int) position & 1);
+        }
+
+        @Override
+        public String toString(long from, int start, int end) {
+            StringBuilder result = new StringBuilder(end - start);
+            long position = from;
+            for (int i = start; i < end; i++) {
+                position = seek(position, i);
+                result.append(charAt(position));
+            }
+            return result.toString();
+        }
+
+        /**
+         * Bytes taken by the character at the position (1 for malformed bytes).
+         */
+        private int size(int position) {
+            int first = bytes.get(position) & 0xFF;
+            int size = first < 0xC2 ? 1 : first <= 0xDF ? 2 : first <= 0xEF ? 3 : first <= 0xF4 ? 4 : 1;
+            if (size == 1) return 1;
+
+            if (position + size > bytes.limit()) return 1;
+            int codePoint = first & (0xFF >> (size + 1));
+            for (int i = 1; i < size; i++) {
+                int next = bytes.get(position + i) & 0xFF;
+                if ((next & 0xC0) != 0x80) return 1;
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+
+            if (codePoint < MINIMUM[size] || codePoint > Character.MAX_CODE_POINT) return 1;
+            if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) return 1;
+            return size;
+        }
+
+        private char decode(int position, int half) {
+            int size = size(position);
+            int first = bytes.get(position) & 0xFF;
+            if (size == 1) return first < 0x80 ? (char) first : REPLACEMENT;
+
+            int codePoint = first & (0xFF >> (size + 1));
+            for (int i = 1; i < size; i++)
+                codePoint = (codePoint << 6) | (bytes.get(position + i) & 0x3F);
+
+            if (size < 4) return (char) codePoint;
+            return half == 0 ? Character.highSurrogate(codePoint) : Character.lowSurrogate(codePoint);
+        }
+    }
+}
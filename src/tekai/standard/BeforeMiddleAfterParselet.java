@@ -1,6 +1,5 @@
 package tekai.standard;
 
-import static tekai.javaexpansions.Strings.coalesce;
 import tekai.Expression;
 import tekai.Parselet;
 
@@ -44,7 +43,7 @@ public class BeforeMiddleAfterParselet extends Parselet {
 
     @Override
     protected Expression parse() {
-        Expression result = new Expression(type, coalesce(value, lastMatch()));
+        Expression result = value == null ? lastMatchAs(type) : new Expression(type, value);
 
         if (endingRegularExpression != null && canConsume(endingRegularExpression)) return result;
 
@@ -58,25 +58,42 @@ public class CommonTransformation extends Transformation {
         return this;
     }
 
+    /**
+     * Type this transformation applies to, null if any.
+     */
+    public String getMatchType() {
+        return from.matchType;
+    }
+
+    boolean changesParamOrder() {
+        return to.paramOrder != null;
+    }
+
+    boolean removes() {
+        return to.toNothing;
+    }
+
     // == Helper classes
 
     public static class From {
-        private final String matchValue;
+        private final Pattern matchValue;
         private final String matchType;
 
         private From(String matchValue, String matchType) {
-            this.matchValue = matchValue;
+            this.matchValue = matchValue == null ? null : Pattern.compile(matchValue);
             this.matchType = matchType;
         }
 
         private boolean matches(Expression expression) {
-            return (matchValue == null || expression.hasValue(matchValue))
-                && (matchType == null  || expression.isType(matchType));
+            return (matchType == null  || expression.isType(matchType))
+                && (matchValue == null || matchValue.matcher(expression.getValueSequence()).matches());
         }
     }
 
     public static class To {
 
+        private static final Pattern SPACING = Pattern.compile("^(\\s*)");
+
         private String value;
         private String type;
         private int[] paramOrder;
@@ -132,8 +149,7 @@ public class CommonTransformation extends Transformation {
         }
 
         private String withOldSpacing(String oldValue, String newValue) {
-            Pattern pattern = Pattern.compile("^(\\s*)");
-            Matcher matcher = pattern.matcher(oldValue);
+            Matcher matcher = SPACING.matcher(oldValue);
             if (matcher.find()) {
                 return matcher.group(1) + newValue;
             } else {
@@ -144,6 +160,11 @@ public class CommonTransformation extends Transformation {
 
     // == Implementation
 
+    @Override
+    public boolean readsValuesOf(String type) {
+        return from.matchValue != null && (from.matchType == null || from.matchType.equals(type));
+    }
+
     @Override
     public boolean when(Expression expression) {
         return from.matches(expression);
@@ -42,7 +42,7 @@ public class InfixParselet extends Parselet {
 
     @Override
     protected Expression parse() {
-        Expression result = new Expression(type, lastMatch());
+        Expression result = lastMatchAs(type);
         result.addChildren(left(), right());
         return result;
     }
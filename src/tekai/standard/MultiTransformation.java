@@ -1,38 +1,136 @@
 package tekai.standard;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import tekai.Expression;
 import tekai.Transformation;
 
+/**
+ * Many transformations applied as one: at every node, the first registered
+ * transformation that applies wins.
+ * <p>
+ * {@link CommonTransformation}s are grouped by the type they match, so a node is only
+ * tried against the ones of its own type and the ones that don't look at the type
+ * (any other transformation included).
+ * </p>
+ * <p>
+ * Once registered, the rules are only read: {@link #select(Expression)} returns the chosen
+ * rule instead of keeping it, so the same instance can transform trees in many threads.
+ * </p>
+ */
 public class MultiTransformation extends Transformation {
 
-    private Transformation matchedTransformation = null;
+    private static final Transformation[] NONE = new Transformation[0];
+
     private final List<Transformation> transformations = new LinkedList<Transformation>();
+    private volatile Index index = new Index(NONE, new HashMap<String, Transformation[]>());
+
+    // only for callers of the when/then pair, see #then
+    private final ThreadLocal<Transformation> matchedTransformation = new ThreadLocal<Transformation>();
 
-    public MultiTransformation register(Transformation transformation) {
+    public synchronized MultiTransformation register(Transformation transformation) {
         transformations.add(transformation);
+        index = index();
         return this;
     }
 
-    @Override
-    public boolean when(Expression expression) {
+    synchronized List<Transformation> getTransformations() {
+        return new ArrayList<Transformation>(transformations);
+    }
 
+    /**
+     * Candidates of every type, keeping the registration order.
+     */
+    private Index index() {
+        Set<String> types = new LinkedHashSet<String>();
+        List<Transformation> anyType = new ArrayList<Transformation>();
         for (Transformation transformation : transformations) {
-            if (transformation.when(expression)) {
-                matchedTransformation = transformation;
-                return true;
+            String type = matchType(transformation);
+            if (type == null)
+                anyType.add(transformation);
+            else
+                types.add(type);
+        }
+
+        Map<String, Transformation[]> byType = new HashMap<String, Transformation[]>();
+        for (String type : types) {
+            List<Transformation> candidates = new ArrayList<Transformation>();
+            for (Transformation transformation : transformations) {
+                String matchType = matchType(transformation);
+                if (matchType == null || matchType.equals(type)) candidates.add(transformation);
             }
+            byType.put(type, candidates.toArray(NONE));
+        }
+
+        return new Index(anyType.toArray(NONE), byType);
+    }
+
+    private static String matchType(Transformation transformation) {
+        return transformation instanceof CommonTransformation
+            ? ((CommonTransformation) transformation).getMatchType()
+            : null;
+    }
+
+    /**
+     * First registered transformation that applies to the expression, null if none does.
+     */
+    @Override
+    public Transformation select(Expression expression) {
+        for (Transformation transformation : index.candidates(expression)) {
+            Transformation selected = transformation.select(expression);
+            if (selected != null) return selected;
         }
 
+        return null;
+    }
+
+    @Override
+    public boolean readsValuesOf(String type) {
+        for (Transformation transformation : getTransformations())
+            if (transformation.readsValuesOf(type)) return true;
         return false;
     }
 
+    @Override
+    public boolean when(Expression expression) {
+        Transformation selected = select(expression);
+        matchedTransformation.set(selected);
+        return selected != null;
+    }
+
+    /**
+     * Applies the transformation chosen by the last {@link #when(Expression)} of this thread.
+     * {@link #applyOn(Expression)} uses {@link #select(Expression)} instead.
+     */
     @Override
     public Expression then(String value, String type, List<Expression> children) {
-        if (matchedTransformation == null) return null;
-        return matchedTransformation.then(value, type, children);
+        Transformation selected = matchedTransformation.get();
+        if (selected == null) return null;
+        return selected.then(value, type, children);
+    }
+
+    // == Helper classes
+
+    private static class Index {
+        private final Transformation[] anyType;
+        private final Map<String, Transformation[]> byType;
+
+        private Index(Transformation[] anyType, Map<String, Transformation[]> byType) {
+            this.anyType = anyType;
+            this.byType = byType;
+        }
+
+        private Transformation[] candidates(Expression expression) {
+            if (expression.getType() == null) return anyType;
+            Transformation[] candidates = byType.get(expression.getType());
+            return candidates == null ? anyType : candidates;
+        }
     }
 
 }
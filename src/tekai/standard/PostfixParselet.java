@@ -26,7 +26,7 @@ public class PostfixParselet extends Parselet {
 
     @Override
     protected Expression parse() {
-        Expression result = new Expression(type, lastMatch());
+        Expression result = lastMatchAs(type);
         result.addChildren(left());
         return result;
     }
@@ -32,7 +32,7 @@ public class PrefixParselet extends Parselet {
 
     @Override
     protected Expression parse() {
-        Expression result = new Expression(type, lastMatch());
+        Expression result = lastMatchAs(type);
         result.addChildren(right());
         return result;
     }
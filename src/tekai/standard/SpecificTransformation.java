@@ -1,7 +1,7 @@
 package tekai.standard;
 
 import tekai.Transformation;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import tekai.Expression;
 import static tekai.Expression.e;
@@ -16,27 +16,50 @@ public abstract class SpecificTransformation extends Transformation{
         if(specificExpression == null)
             return exp;
         else
-            return then(exp, specificExpression);
+            return then(copyOf(exp), specificExpression);
+    }
+
+    /**
+     * {@link #then(Expression, Expression)} may change the tree it gets, which shares
+     * its unchanged nodes with the original one, so it gets a copy of every node.
+     */
+    private static Expression copyOf(Expression expression) {
+        List<Expression> children = new ArrayList<Expression>(expression.getChildCount());
+        for (Expression child : expression.getChildren())
+            children.add(copyOf(child));
+        return e(expression.printValue(), expression.getType(), children);
     }
 
     private Expression applying(Expression expression){
-        LinkedList<Expression> transformedChildren = applying(expression.getChildren());
+        List<Expression> children = expression.getChildren();
+        List<Expression> transformedChildren = applying(children);
 
         if (when(expression)){
             specificExpression = expression;
             return null;
         }
+        else if (transformedChildren == children)
+            return expression;
         else
             return e(expression.printValue(), expression.getType(), transformedChildren);
     }
 
-    private LinkedList<Expression> applying(List<Expression> children) {
-        LinkedList<Expression> transformedChildren = new LinkedList<Expression>();
-        for (Expression child : children) {
+    /**
+     * The same list if no child changed, a new one otherwise (see {@link Transformation}).
+     */
+    private List<Expression> applying(List<Expression> children) {
+        List<Expression> transformedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Expression child = children.get(i);
             Expression newChild = applying(child);
-            if (newChild != null) transformedChildren.add(newChild);
+
+            if (transformedChildren == null && newChild != child)
+                transformedChildren = new ArrayList<Expression>(children.subList(0, i));
+
+            if (transformedChildren != null && newChild != null)
+                transformedChildren.add(newChild);
         }
-        return transformedChildren;
+        return transformedChildren == null ? children : transformedChildren;
     }
 
     @Override
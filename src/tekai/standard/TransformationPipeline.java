@@ -0,0 +1,146 @@
+package tekai.standard;
+
+import static tekai.Expression.e;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tekai.Expression;
+import tekai.Transformation;
+
+/**
+ * Transformations applied one after the other, as if each one were applied on the
+ * result of the previous.
+ * <p>
+ * When every stage only looks at the node it rewrites ({@link CommonTransformation}s,
+ * alone or in {@link MultiTransformation}s) the stages are fused: a single bottom up
+ * traversal applies all of them at every node, in order. Otherwise
+ * {@link #getFusionProblem()} tells why and the stages run one traversal each.
+ * </p>
+ */
+public class TransformationPipeline {
+
+    private final List<Transformation> stages = new ArrayList<Transformation>();
+
+    public TransformationPipeline then(Transformation stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    public boolean isFused() {
+        return getFusionProblem() == null;
+    }
+
+    /**
+     * Why the stages can't be applied in a single traversal, null if they can.
+     * <p>
+     * Checked at every {@link #applyOn(Expression)}, as stages may still be changed.
+     * </p>
+     */
+    public String getFusionProblem() {
+        return fusionProblem(stages);
+    }
+
+    public Expression applyOn(Expression expression) {
+        if (isFused()) return fused(expression);
+
+        Expression result = expression;
+        for (Transformation stage : stages) {
+            if (result == null) return null;
+            result = stage.applyOn(result);
+        }
+        return result;
+    }
+
+    // == Fused traversal
+
+    private Expression fused(Expression expression) {
+        List<Expression> children = expression.getChildren();
+        List<Expression> transformedChildren = fused(children);
+
+        // stages look at the node only, so until one matches the original stands for it
+        Expression current = expression;
+        List<Expression> currentChildren = transformedChildren;
+        boolean newChildren = transformedChildren != children;
+        for (Transformation stage : stages) {
+            Transformation selected = stage.select(current);
+            if (selected == null) continue;
+
+            // then() may change the list it gets, so it only gets lists made here
+            List<Expression> stageChildren = newChildren ? currentChildren : new ArrayList<Expression>(currentChildren);
+            current = selected.then(current.printValue(), current.getType(), stageChildren);
+            if (current == null) return null;
+            currentChildren = current.getChildren();
+            newChildren = false;
+        }
+
+        if (current == expression && currentChildren != children)
+            return e(expression.printValue(), expression.getType(), currentChildren);
+        return current;
+    }
+
+    /**
+     * The same list if no child changed, a new one otherwise (see {@link Transformation}).
+     */
+    private List<Expression> fused(List<Expression> children) {
+        List<Expression> transformedChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Expression child = children.get(i);
+            Expression newChild = fused(child);
+
+            if (transformedChildren == null && newChild != child)
+                transformedChildren = new ArrayList<Expression>(children.subList(0, i));
+
+            if (transformedChildren != null && newChild != null)
+                transformedChildren.add(newChild);
+        }
+        return transformedChildren == null ? children : transformedChildren;
+    }
+
+    // == Fusion rules
+
+    private static String fusionProblem(List<Transformation> stages) {
+        for (int i = 0; i < stages.size(); i++) {
+            Transformation stage = stages.get(i);
+            if (!isNodeLocal(stage))
+                return "Stage " + (i + 1) + " (" + stage.getClass().getSimpleName() + ") may look beyond the node it rewrites";
+        }
+
+        // only node local stages from here on, made of common and multi transformations
+        for (int i = 0; i < stages.size(); i++) {
+            // fused, a later stage removes children before an earlier one reorders them
+            if (changesParamOrder(stages.get(i)))
+                for (int j = i + 1; j < stages.size(); j++)
+                    if (removes(stages.get(j)))
+                        return "Stage " + (j + 1) + " removes nodes that stage " + (i + 1) + " reorders";
+        }
+        return null;
+    }
+
+    private static boolean isNodeLocal(Transformation transformation) {
+        if (transformation instanceof CommonTransformation) return true;
+        if (!(transformation instanceof MultiTransformation)) return false;
+
+        for (Transformation rule : ((MultiTransformation) transformation).getTransformations())
+            if (!isNodeLocal(rule)) return false;
+        return true;
+    }
+
+    private static boolean changesParamOrder(Transformation transformation) {
+        if (transformation instanceof CommonTransformation)
+            return ((CommonTransformation) transformation).changesParamOrder();
+
+        for (Transformation rule : ((MultiTransformation) transformation).getTransformations())
+            if (changesParamOrder(rule)) return true;
+        return false;
+    }
+
+    private static boolean removes(Transformation transformation) {
+        if (transformation instanceof CommonTransformation)
+            return ((CommonTransformation) transformation).removes();
+
+        for (Transformation rule : ((MultiTransformation) transformation).getTransformations())
+            if (removes(rule)) return true;
+        return false;
+    }
+}
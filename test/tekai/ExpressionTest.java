@@ -0,0 +1,55 @@
+package tekai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static tekai.Expression.e;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ExpressionTest {
+
+    @Test
+    public void spacingAndValue() {
+        Expression expression = new Expression("ABC", " \n abc\ndef");
+        assertEquals(" \n ", expression.getSpacing());
+        assertEquals("abc", expression.getValue());
+        assertEquals(" \n abc", expression.printValue());
+    }
+
+    @Test
+    public void sliceOfSource() {
+        StringBuilder source = new StringBuilder("1 +  22");
+        Expression expression = new Expression("NUMBER", source, 3, 7);
+        assertEquals("  ", expression.getSpacing());
+        assertEquals("22", expression.getValue());
+
+        CharSequence value = expression.getValueSequence();
+        source.setCharAt(5, '3');
+        assertEquals("32", value.toString());
+        assertEquals("2", value.subSequence(1, 2).toString());
+        assertTrue(expression.hasValue("3\\d"));
+    }
+
+    @Test
+    public void valueWithoutSpacingIsNotCopied() {
+        String value = "abc";
+        assertSame(value, new Expression("ABC", value).getValue());
+    }
+
+    @Test
+    public void childrenView() {
+        Expression expression = e("+", "PLUS", e("1", "NUMBER"), e("2", "NUMBER"));
+        List<Expression> children = expression.getChildren();
+
+        children.remove(0);
+        children.add(e("3", "NUMBER"));
+        expression.addFirstChild(e("0", "NUMBER"));
+
+        assertEquals(3, expression.getChildCount());
+        assertEquals("([+]:PLUS [0]:NUMBER [2]:NUMBER [3]:NUMBER)", expression.toString());
+        assertEquals("3", expression.getChild(2).getValue());
+    }
+}
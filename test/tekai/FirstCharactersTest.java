@@ -0,0 +1,57 @@
+package tekai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static tekai.Helpers.word;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class FirstCharactersTest {
+
+    @Test
+    public void literals() {
+        assertFirst("(", "\\(");
+        assertFirst("><", "\\>\\=|\\<");
+        assertFirst("%*/", "(\\*|/|%)");
+        assertFirst(":", "(\\:\\w+)");
+        assertFirst("'", "\\'[^\\']*?\\'");
+        assertFirst("a", "a(b|[^)c]|\\))");
+    }
+
+    @Test
+    public void caseInsensitiveWords() {
+        assertFirst("Ss", word("SELECT"));
+        assertFirst("LNln", word("NOT\\s+LIKE|LIKE"));
+        assertFirst("Aa", "(?i:a)");
+        assertFirst("Aab", "(?:(?i)a)?b");
+    }
+
+    @Test
+    public void classesAndQuantifiers() {
+        assertFirst("0123456789", "\\d+(?:\\.\\d+)?");
+        assertFirst("ABC", "[ABC]");
+        assertFirst("abc", "[a-c]{1,2}");
+        assertFirst("ab", "a?b");
+        assertFirst("ab", "a{0}b");
+    }
+
+    @Test
+    public void unknown() {
+        assertNull(FirstCharacters.of("."));
+        assertNull(FirstCharacters.of("[^a]"));
+        assertNull(FirstCharacters.of("a?"));
+        assertNull(FirstCharacters.of("\\s+a"));
+        assertNull(FirstCharacters.of("(?=a)a"));
+        assertNull(FirstCharacters.of(word("(?:INNER|RIGHT|LEFT)?\\s+JOIN|JOIN")));
+    }
+
+    private void assertFirst(String expected, String regularExpression) {
+        Set<Character> expectedCharacters = new TreeSet<Character>();
+        for (char c : expected.toCharArray())
+            expectedCharacters.add(c);
+        assertEquals(regularExpression, expectedCharacters, new TreeSet<Character>(FirstCharacters.of(regularExpression)));
+    }
+}
@@ -0,0 +1,64 @@
+package tekai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static tekai.Helpers.word;
+
+import org.junit.Test;
+
+public class KeywordTest {
+
+    @Test
+    public void recognizesWords() {
+        assertNotNull(Keyword.of(word("SELECT")));
+        assertNotNull(Keyword.of(word("GROUP BY")));
+        assertNotNull(Keyword.of(word("NOT\\s+LIKE|LIKE")));
+        assertNotNull(Keyword.of(word("ASC|DESC")));
+
+        assertNull(Keyword.of("SELECT"));
+        assertNull(Keyword.of(word("(?:INNER|RIGHT|LEFT)?\\s+JOIN|JOIN")));
+        assertNull(Keyword.of(word("a.b")));
+        assertNull(Keyword.of(word("ASC|")));
+        assertNull(Keyword.of(word("")));
+    }
+
+    @Test
+    public void matchesAsTheRegularExpression() {
+        String[] keywords = {word("GROUP BY"), word("NOT\\s+LIKE|LIKE"), word("ASC|ASCII"), word("i")};
+        String[] sources = {
+            "group by", "  GROUP \t\n BY campo", "GroupBy", "group byx", "group by_", "group by1",
+            "group by(", "group byé", "group by²", "group by", "x group by",
+            "not like", "NOT LIKE 'a'", "notlike", "not likes", "like", "LIKE%",
+            "asc", "ascii", "asciis", "ASC,", "i", "I", "İ", "ı", "", "   "
+        };
+
+        for (String keyword : keywords)
+            for (String source : sources)
+                assertSameMatch(keyword, source);
+    }
+
+    @Test
+    public void unknownBoundaryFallsBackToTheRegularExpression() {
+        Keyword keyword = Keyword.of(word("BY"));
+        assertEquals(Keyword.UNKNOWN, keyword.end("byé", 0));
+        assertEquals(2, keyword.end("by é", 0));
+        assertEquals(-1, keyword.end("b", 0));
+    }
+
+    private void assertSameMatch(String regularExpression, String text) {
+        Source expected = new Source(text);
+        Source actual = new Source(text);
+        boolean matched = expected.matches(PatternCache.compile(regularExpression));
+
+        String message = regularExpression + " on \"" + text + "\"";
+        assertEquals(message, matched, actual.matches(Keyword.of(regularExpression)));
+        if (!matched) return;
+
+        assertEquals(message, expected.lastMatch(), actual.lastMatch());
+        assertEquals(message, expected.lastMatchAs("A").printValue(), actual.lastMatchAs("A").printValue());
+        expected.consumeLastMatch();
+        actual.consumeLastMatch();
+        assertEquals(message, expected.getCursor(), actual.getCursor());
+    }
+}
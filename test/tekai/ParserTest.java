@@ -1,10 +1,15 @@
 package tekai;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static tekai.Helpers.word;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Test;
 
 import tekai.Expression;
@@ -189,6 +194,124 @@ public class ParserTest {
         assertParsing("([SQL]:SQL ([SELECT]:SELECT [*]:IDENTIFIER) ([FROM]:FROM [tabela]:IDENTIFIER ([INNER JOIN]:JOIN [outra_tabela]:IDENTIFIER [xxx]:IDENTIFIER)))", "SELECT * FROM tabela INNER JOIN outra_tabela ON xxx");
     }
 
+    @Test
+    public void patternsAreCompiledOnlyOnce() {
+        parse("SELECT campo1, campo2 FROM tabela INNER JOIN outra_tabela ON xxx");
+        long misses = PatternCache.shared().getMisses();
+
+        parse("SELECT campo1, campo2 FROM tabela INNER JOIN outra_tabela ON xxx");
+        assertEquals(misses, PatternCache.shared().getMisses());
+    }
+
+    @Test
+    public void patternCacheIsBounded() {
+        PatternCache cache = new PatternCache(2);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+
+        assertEquals(2, cache.getSize());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // "b" went, as "a" was used again
+        cache.get("a");
+        assertEquals(3, cache.getMisses());
+        cache.get("b");
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void patternCacheCountsHits() {
+        PatternCache cache = new PatternCache(4);
+        for (int i = 0; i < 10; i++) {
+            cache.get("a");
+            cache.get("b");
+        }
+
+        assertEquals(2, cache.getMisses());
+        assertEquals(18, cache.getHits());
+        assertEquals("PatternCache(size: 2/4, hits: 18, misses: 2)", cache.toString());
+
+        cache.clear();
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozenParserTakesNoRules() {
+        Parser anyExpression = new Parser();
+        Parser anyNumber = new Parser();
+        anyExpression.rule("MINUS").is("--").then(anyNumber).end();
+        anyNumber.rule("NUMBER").is("\\d+").end();
+
+        Grammar grammar = anyExpression.freeze();
+        assertEquals("([--]:MINUS [1]:NUMBER)", grammar.parse("--1").toString());
+
+        anyNumber.rule("IDENTIFIER").is("\\w+").end();
+    }
+
+    @Test
+    public void frozenParserKeepsItsParselets() {
+        Parser parser = new Parser();
+        Parselet number = new AtomParselet(0, "\\d+", "NUMBER");
+        parser.register(number);
+        parser.freeze();
+
+        try {
+            number.setPrecedence(10);
+            fail("Expected a parselet of a frozen parser not to change");
+        } catch (IllegalStateException e) {
+            // success
+        }
+        assertEquals(0, number.getPrecedence());
+    }
+
+    @Test
+    public void fingerprintsCompareShapes() {
+        List<String> literals = Arrays.asList("1");
+        Fingerprint fingerprint = new Fingerprint(1, 2, "id = \0\1", literals);
+
+        assertEquals(fingerprint, new Fingerprint(1, 2, "id = \0\1", Collections.<String>emptyList()));
+        // same hash, different statements
+        assertFalse(fingerprint.equals(new Fingerprint(1, 2, "id = \0\2", literals)));
+        assertFalse(fingerprint.equals(new Fingerprint(1, 2, "id =  \0\1", literals)));
+        assertFalse(fingerprint.equals(new Fingerprint(1, 3, "id = \0\1", literals)));
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        assertEquals("abc(\0\1, \0\2) + \0\1", parser.fingerprint("abc(1, 'a') + 2.5", "NUMBER", "STRING").getShape());
+        assertEquals("'\0\0' + \0\1", parser.fingerprint("'\0' + 1", "NUMBER").getShape());
+    }
+
+    @Test
+    public void unparseableSourceIsLocated() {
+        Parser anyNumber = new Parser();
+        anyNumber.rule("NUMBER").is("\\d+").end();
+
+        try {
+            anyNumber.parse("1\n  22 )");
+            fail("Expected not able to parse leftover \"22 )\"");
+        } catch (UnparseableException e) {
+            assertEquals(4, e.getOffset());
+            assertEquals(2, e.getLine());
+            assertEquals(3, e.getColumn());
+            assertEquals("22 )", e.getSnippet());
+            assertEquals("There are things to parse, but no rule for it: \"22 )\"", e.getMessage());
+        }
+
+        try {
+            anyNumber.parse("\r\n\n   )");
+            fail("Expected not able to parse \")\"");
+        } catch (UnparseableException e) {
+            assertEquals(6, e.getOffset());
+            assertEquals(3, e.getLine());
+            assertEquals(4, e.getColumn());
+            assertEquals("Could not find a then to parse \")\"", e.getMessage());
+        }
+    }
+
     @Test
     public void exceptions() {
         try {
@@ -94,4 +94,30 @@ public class PrinterTest {
                 "    |__ 3 (NUMBER)"
                 , expression.asPrintTree());
     }
+
+    @Test
+    public void printChildren() throws Exception {
+        Printer printer = new Printer() {
+            @Override
+            public String print(Expression e) {
+                if (e.getChildCount() == 0) return e.printValue();
+                return printChildren(e.getChildren(), e.getValue());
+            }
+        };
+
+        Expression expression = e("AND", "BOOLEAN", e("a", "IDENTIFIER"), e(" b", "IDENTIFIER"));
+        assertEquals("a AND b", printer.print(expression));
+
+        StringBuilder out = new StringBuilder("> ");
+        printer.print(e("+", "ARITHMETIC", e("1", "NUMBER"), e("2", "NUMBER")), out);
+        assertEquals("> 1+2", out.toString());
+    }
+
+    @Test
+    public void separators() {
+        assertEquals(" AND", Separator.of("AND").getText());
+        assertEquals(" ||", Separator.of(" ||").getText());
+        assertEquals(",", Separator.of(",").getText());
+        assertEquals("", Separator.of("").getText());
+    }
 }
@@ -1,15 +1,27 @@
 package tekai;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static tekai.Expression.e;
 import static tekai.standard.CommonTransformation.from;
 import static tekai.standard.CommonTransformation.fromType;
+import static tekai.standard.CommonTransformation.fromValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
 import tekai.Expression;
 import tekai.Transformation;
 import tekai.standard.MultiTransformation;
+import tekai.standard.SpecificTransformation;
+import tekai.standard.TransformationPipeline;
 
 public class TranformationTest {
 
@@ -87,4 +99,153 @@ public class TranformationTest {
 
         assertEquals("([CONVERT]:FUNCTION [VARCHAR]:DATATYPE [campo]:IDENTIFIER)", result.toString());
     }
+
+    @Test
+    public void firstRegisteredWinsWhateverTheType() {
+        MultiTransformation t = new MultiTransformation();
+        t.register(from("NVL", "FUNCTION").toValue("ISNULL"));
+        t.register(fromValue("NVL|SYSDATE").toValue("UNKNOWN"));
+        t.register(from("SYSDATE", "FUNCTION").toValue("GETDATE"));
+        t.register(fromType("NUMBER").toType("INTEGER"));
+
+        Expression expression = e("NVL", "FUNCTION",
+                        e("SYSDATE", "FUNCTION"),
+                        e("0", "NUMBER"));
+
+        Expression result = t.applyOn(expression);
+
+        assertEquals("([ISNULL]:FUNCTION [UNKNOWN]:FUNCTION [0]:INTEGER)", result.toString());
+    }
+
+    @Test
+    public void unchangedSubtreesAreShared() {
+        Expression text = e("'Some text'", "STRING");
+        Expression substring = e("SUBSTRING", "FUNCTION", text, e("0", "NUMBER"));
+        Expression length = e("LENGTH", "FUNCTION", e("abc", "IDENTIFIER"));
+        Expression expression = e("+", "ARITHMETIC", substring, length);
+
+        Expression result = from("LENGTH", "FUNCTION").toValue("LEN").applyOn(expression);
+
+        assertEquals("([+]:ARITHMETIC ([SUBSTRING]:FUNCTION ['Some text']:STRING [0]:NUMBER) ([LEN]:FUNCTION [abc]:IDENTIFIER))", result.toString());
+        assertSame(substring, result.getChild(0));
+        assertSame(length.getChild(0), result.getChild(1).getChild(0));
+        assertSame(expression, fromType("DATATYPE").toNothing().applyOn(expression));
+    }
+
+    @Test
+    public void rulesSharedByThreads() throws Exception {
+        final MultiTransformation t = new MultiTransformation();
+        t.register(from("CAST", "FUNCTION").toValue("CONVERT").toParamOrder(2, 1));
+        t.register(from("VARCHAR2", "DATATYPE").toValue("VARCHAR"));
+        t.register(from("NVL", "FUNCTION").toValue("ISNULL"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 200; i++) {
+                final String function = i % 2 == 0 ? "CAST" : "NVL";
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return t.applyOn(e(function, "FUNCTION", e("campo", "IDENTIFIER"), e("VARCHAR2", "DATATYPE"))).toString();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(i % 2 == 0
+                        ? "([CONVERT]:FUNCTION [VARCHAR]:DATATYPE [campo]:IDENTIFIER)"
+                        : "([ISNULL]:FUNCTION [campo]:IDENTIFIER [VARCHAR]:DATATYPE)"
+                        , results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void fusedPipeline() {
+        Expression expression = e("CAST", "FUNCTION",
+                        e("NVL", "FUNCTION", e("campo", "IDENTIFIER"), e("''", "STRING")),
+                        e("VARCHAR2", "DATATYPE"));
+
+        Transformation drop = fromType("STRING").toNothing();
+        Transformation rename = from("NVL", "FUNCTION").toValue("ISNULL");
+        MultiTransformation convert = new MultiTransformation()
+            .register(from("CAST", "FUNCTION").toValue("CONVERT").toParamOrder(2, 1))
+            .register(from("VARCHAR2", "DATATYPE").toValue("VARCHAR"));
+        Transformation retype = fromType("DATATYPE").toType("TYPE");
+
+        TransformationPipeline pipeline = new TransformationPipeline().then(drop).then(rename).then(convert).then(retype);
+
+        assertTrue(pipeline.isFused());
+        assertEquals(
+            retype.applyOn(convert.applyOn(rename.applyOn(drop.applyOn(expression)))).toString(),
+            pipeline.applyOn(expression).toString());
+        assertEquals("([CONVERT]:FUNCTION [VARCHAR]:TYPE ([ISNULL]:FUNCTION [campo]:IDENTIFIER))", pipeline.applyOn(expression).toString());
+    }
+
+    @Test
+    public void pipelineThatCanNotBeFused() {
+        Expression expression = e("CAST", "FUNCTION",
+                        e("campo", "IDENTIFIER"),
+                        e("VARCHAR2", "DATATYPE"));
+
+        Transformation reorder = from("CAST", "FUNCTION").toParamOrder(2, 1);
+        Transformation drop = fromType("IDENTIFIER").toNothing();
+
+        TransformationPipeline pipeline = new TransformationPipeline().then(reorder).then(drop);
+
+        assertEquals("Stage 2 removes nodes that stage 1 reorders", pipeline.getFusionProblem());
+        assertEquals("([CAST]:FUNCTION [VARCHAR2]:DATATYPE)", pipeline.applyOn(expression).toString());
+    }
+
+    @Test
+    public void pipelineWithACustomStageAfterAReorder() {
+        Expression expression = e("F", "FUNCTION",
+                        e("a", "IDENTIFIER"),
+                        e("b", "IDENTIFIER"));
+
+        Transformation reorder = fromType("FUNCTION").toParamOrder(2, 1);
+        Transformation upper = new Transformation() {
+            @Override
+            public boolean when(Expression expression) {
+                return expression.isType("IDENTIFIER");
+            }
+
+            @Override
+            public Expression then(String value, String type, List<Expression> children) {
+                return e(value.toUpperCase(), type, children);
+            }
+        };
+
+        TransformationPipeline pipeline = new TransformationPipeline().then(reorder).then(upper);
+
+        assertTrue(pipeline.getFusionProblem().startsWith("Stage 2 "));
+        assertEquals("([F]:FUNCTION [B]:IDENTIFIER [A]:IDENTIFIER)", pipeline.applyOn(expression).toString());
+    }
+
+    @Test
+    public void specificTransformationLeavesTheOriginalAlone() {
+        Expression expression = e("SELECT", "SELECT",
+                        e("FROM", "FROM", e("tabela", "IDENTIFIER")),
+                        e("TOP", "TOP", e("10", "NUMBER")));
+        String original = expression.toString();
+
+        Transformation moveTop = new SpecificTransformation() {
+            @Override
+            public boolean when(Expression expression) {
+                return expression.isType("TOP");
+            }
+
+            @Override
+            public Expression then(Expression expression, Expression specific) {
+                expression.getChild(0).addFirstChild(specific);
+                return expression;
+            }
+        };
+
+        assertEquals("([SELECT]:SELECT ([FROM]:FROM ([TOP]:TOP [10]:NUMBER) [tabela]:IDENTIFIER))",
+            moveTop.applyOn(expression).toString());
+        assertEquals(original, expression.toString());
+    }
 }
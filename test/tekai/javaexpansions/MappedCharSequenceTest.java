@@ -0,0 +1,85 @@
+package tekai.javaexpansions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCharSequenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void latin1() throws IOException {
+        assertSameCharacters(text("abc é ÿ\n", 3000), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void utf8() throws IOException {
+        assertSameCharacters(text("abc é ção 日本 😀 z\n", 3000), StandardCharsets.UTF_8);
+        assertSameCharacters("", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void malformedUtf8() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), new byte[] {'a', (byte) 0xC3, 'b', (byte) 0xE6, (byte) 0x97, (byte) 0xC0, (byte) 0x80, (byte) 0xF0});
+
+        MappedCharSequence actual = MappedCharSequence.open(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals("a�b�����", actual.toString());
+        for (int i = actual.length() - 1; i >= 0; i--)
+            assertEquals("at " + i, "a�b�����".charAt(i), actual.charAt(i));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherCharsets() throws IOException {
+        MappedCharSequence.open(folder.newFile().toPath(), StandardCharsets.UTF_16);
+    }
+
+    private String text(String line, int times) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < times; i++)
+            result.append(i).append(' ').append(line);
+        return result.toString();
+    }
+
+    private void assertSameCharacters(String expected, Charset charset) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), expected.getBytes(charset));
+        MappedCharSequence actual = MappedCharSequence.open(file.toPath(), charset);
+
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected, actual.toString());
+
+        for (int i = expected.length() - 1; i >= 0; i--)
+            assertEquals("at " + i, expected.charAt(i), actual.charAt(i));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 2000 && expected.length() > 0; i++) {
+            int index = random.nextInt(expected.length());
+            assertEquals("at " + index, expected.charAt(index), actual.charAt(index));
+            // a few steps back and forth, as regular expressions do
+            for (int j = Math.max(0, index - 3); j < Math.min(expected.length(), index + 3); j++)
+                assertEquals("at " + j, expected.charAt(j), actual.charAt(j));
+            for (int j = Math.min(expected.length(), index + 3) - 1; j >= Math.max(0, index - 6); j--)
+                assertEquals("at " + j, expected.charAt(j), actual.charAt(j));
+        }
+
+        for (int i = 0; i < 50 && expected.length() > 0; i++) {
+            int start = random.nextInt(expected.length());
+            int end = start + random.nextInt(Math.min(5000, expected.length() - start));
+            CharSequence slice = actual.subSequence(start, end);
+            assertEquals(expected.substring(start, end), slice.toString());
+            if (end > start) assertEquals(expected.charAt(end - 1), slice.charAt(end - start - 1));
+        }
+    }
+}
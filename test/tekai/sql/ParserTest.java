@@ -1,16 +1,38 @@
 package tekai.sql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static tekai.Helpers.word;
 
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
 
 import tekai.Expression;
+import tekai.ExpressionArena;
+import tekai.Fingerprint;
+import tekai.Grammar;
+import tekai.IncrementalParser;
 import tekai.Parselet;
+import tekai.ParseResult;
+import tekai.ParseStatistics;
 import tekai.Parser;
+import tekai.StatementReader;
+import tekai.UnparseableException;
+import tekai.javaexpansions.MappedCharSequence;
 import tekai.standard.AtomParselet;
 import tekai.standard.BeforeMiddleAfterParselet;
 import tekai.standard.InfixParselet;
@@ -201,6 +223,293 @@ public class ParserTest {
          assertParsing("([IS]:IS [campo]:IDENTIFIER ([NOT]:NOT [NULL]:IDENTIFIER))", "campo IS NOT NULL");
      }
 
+    @Test
+    public void combinedMatching() {
+        String[] sources = {
+            "SELECT campo1 || 'string' || abc(campo3, campo4) FROM tabela",
+            "SELECT * FROM tabela WHERE (campo = 2) AND id = 35.89 OR (campo = 5)",
+            "SELECT  * FROM tabela WHERE campo >= 2 ORDER BY campo2, campo3 DESC LIMIT 10 OFFSET 0",
+            "SELECT CASE campo WHEN EXISTS(SELECT * FROM tabela) THEN 'ok' END FROM tabela",
+            "campo NOT  LIKE 'teste'"
+        };
+
+        for (String source : sources) {
+            Parser parser = new Parser(source);
+            configureParser(parser);
+            parser.setCombinedMatching(true);
+            assertEquals(source, parse(source).toString(), parser.parse().toString());
+        }
+    }
+
+    @Test
+    public void grammarSharedByThreads() throws Exception {
+        final String[] sources = {
+            "SELECT campo1 || 'string' || abc(campo3, campo4) FROM tabela",
+            "SELECT * FROM tabela WHERE (campo = 2) AND id = 35.89 OR (campo = 5)",
+            "SELECT CASE campo WHEN EXISTS(SELECT * FROM tabela) THEN 'ok' END FROM tabela",
+            "SELECT  * FROM tabela WHERE campo = 2 ORDER BY campo2 LIMIT 10 OFFSET 0"
+        };
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        final Grammar grammar = parser.freeze();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 200; i++) {
+                final String source = sources[i % sources.length];
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return parse(source).toString().equals(grammar.parse(source).toString());
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results)
+                assertEquals(true, result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void batchKeepsOrderAndFailures() {
+        List<String> sources = new ArrayList<String>();
+        for (int i = 0; i < 500; i++)
+            sources.add(i % 100 == 7 ? "SELECT campo FROM" : "SELECT campo" + i + " FROM tabela WHERE id = " + i);
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        List<ParseResult> results = parser.freeze().parseAll(sources);
+
+        assertEquals(sources.size(), results.size());
+        for (int i = 0; i < sources.size(); i++) {
+            ParseResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(i % 100 != 7, result.isSuccess());
+            if (result.isSuccess())
+                assertEquals(parse(sources.get(i)).toString(), result.getExpression().toString());
+            else
+                assertTrue(result.getError() instanceof UnparseableException);
+        }
+    }
+
+    @Test
+    public void statementsOfAScript() {
+        String script = "SELECT campo FROM tabela WHERE nome = 'a;b';\n"
+            + "-- comment; with a semicolon\n;\n"
+            + "SELECT campo FROM tabela WHERE id = 1 - 2;;\n"
+            + "SELECT \"x;y\" FROM;\n"
+            + "/* comment; with a semicolon */;\n"
+            + "SELECT campo FROM tabela";
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        StatementReader statements = new StatementReader(parser.freeze(), new StringReader(script));
+
+        List<String> expressions = new ArrayList<String>();
+        while (statements.hasNext()) {
+            ParseResult result = statements.next();
+            expressions.add(result.getIndex() + " " + (result.isSuccess() ? result.getExpression().toString() : result.getSource().toString()));
+        }
+
+        assertEquals(Arrays.asList(
+            "0 " + parse("SELECT campo FROM tabela WHERE nome = 'a;b'"),
+            "1 " + parse("SELECT campo FROM tabela WHERE id = 1 - 2"),
+            "2 SELECT \"x;y\" FROM",
+            "3 " + parse("SELECT campo FROM tabela")), expressions);
+    }
+
+    @Test
+    public void statementsAfterComments() {
+        String script = "-- first one\nSELECT campo FROM tabela;\n"
+            + "/* second; one */ -- still second\n  SELECT nome FROM tabela -- done; really\n;\n"
+            + "SELECT campo /* inner\n; */ FROM tabela WHERE id = 1 - 2 -- last";
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        StatementReader statements = new StatementReader(parser.freeze(), new StringReader(script));
+
+        assertEquals(parse("SELECT campo FROM tabela").toString(), statements.next().getExpression().toString());
+
+        ParseResult second = statements.next();
+        assertTrue(second.isSuccess());
+        assertEquals(parse("SELECT nome FROM tabela").toString(), second.getExpression().toString());
+        assertEquals("SELECT nome FROM tabela                \n", second.getSource());
+
+        ParseResult third = statements.next();
+        assertTrue(third.isSuccess());
+        assertEquals(parse("SELECT campo FROM tabela WHERE id = 1 - 2").toString(), third.getExpression().toString());
+        assertEquals("SELECT campo         \n     FROM tabela WHERE id = 1 - 2        ", third.getSource());
+        assertFalse(statements.hasNext());
+    }
+
+    @Test
+    public void mappedScript() throws Exception {
+        File file = File.createTempFile("script", ".sql");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "SELECT nome FROM tabela WHERE nome = 'ação';\nSELECT campo FROM tabela".getBytes(StandardCharsets.UTF_8));
+        MappedCharSequence script = MappedCharSequence.open(file.toPath(), StandardCharsets.UTF_8);
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        Grammar grammar = parser.freeze();
+
+        Expression expression = grammar.parse(script.subSequence(0, script.length() - 26));
+        assertEquals(parse("SELECT nome FROM tabela WHERE nome = 'ação'").toString(), expression.toString());
+        assertEquals(" nome = 'ação'", expression.getChild(2).getChild(0).getSpan().getText().toString());
+
+        StatementReader statements = new StatementReader(grammar, script);
+        assertEquals(expression.toString(), statements.next().getExpression().toString());
+        assertEquals(parse("SELECT campo FROM tabela").toString(), statements.next().getExpression().toString());
+        assertFalse(statements.hasNext());
+    }
+
+    @Test
+    public void statementsSeparatedByLines() throws Exception {
+        String script = "SELECT campo FROM tabela\r\n go \r\nGO\nSELECT 'x\nGO\n' FROM tabela\nGOTO\nGO";
+
+        Parser parser = new Parser();
+        configureParser(parser);
+        StatementReader statements = new StatementReader(parser.freeze(), new StringReader(script));
+        statements.setTerminator(null);
+        statements.setLineTerminator("GO");
+
+        assertEquals("SELECT campo FROM tabela\r\n", statements.next().getSource());
+        assertEquals("SELECT 'x\nGO\n' FROM tabela\nGOTO\n", statements.next().getSource());
+        assertFalse(statements.hasNext());
+        statements.close();
+    }
+
+    @Test
+    public void fingerprints() {
+        Parser parser = new Parser();
+        configureParser(parser);
+        Grammar grammar = parser.freeze();
+        String[] literals = {"NUMBER", "STRING", "PARAMETER"};
+
+        Fingerprint fingerprint = grammar.fingerprint("SELECT campo FROM tabela WHERE id = 1 AND nome = 'a' OR x = :p", literals);
+        Fingerprint other = grammar.fingerprint("SELECT campo FROM tabela WHERE id = 25.5 AND nome = 'b c' OR x = :q", literals);
+
+        assertEquals(fingerprint, other);
+        assertEquals(fingerprint.hashCode(), other.hashCode());
+        assertEquals(Arrays.asList("1", "'a'", ":p"), fingerprint.getLiterals());
+        assertEquals(Arrays.asList("25.5", "'b c'", ":q"), other.getLiterals());
+
+        assertFalse(fingerprint.equals(grammar.fingerprint("SELECT campo FROM tabela WHERE id = 1 AND nome = 1 OR x = :p", literals)));
+        assertFalse(fingerprint.equals(grammar.fingerprint("SELECT campo FROM tabela WHERE id = 1 AND nome = 'a' OR y = :p", literals)));
+        assertFalse(fingerprint.equals(grammar.fingerprint("SELECT campo FROM tabela WHERE id = 1 AND nome = 'a' OR  x = :p", literals)));
+        assertFalse(fingerprint.equals(grammar.fingerprint("SELECT campo FROM tabela WHERE id = 1 AND nome = 'a' OR x = :p", "NUMBER")));
+    }
+
+    @Test
+    public void statistics() {
+        Parser parser = new Parser();
+        configureParser(parser);
+        ParseStatistics statistics = new ParseStatistics();
+        parser.setStatistics(statistics);
+        Grammar grammar = parser.freeze();
+
+        String source = "SELECT campo FROM tabela WHERE id = 1 AND (nome = 2 OR x = 3)";
+        assertEquals(parse(source).toString(), grammar.parse(source).toString());
+
+        ParseStatistics.Entry number = entry(statistics, "AtomParselet \\d+");
+        assertEquals(3, number.getMatches());
+        assertEquals(3, number.getParses());
+        assertTrue(number.getProbes() >= 3);
+        assertTrue(number.getMaxDepth() > 1);
+        assertEquals(1, entry(statistics, "tekai.sql.ParserTest$", "SELECT").getMaxDepth());
+
+        String json = statistics.toJson();
+        assertTrue(json, json.startsWith("[\n  {\"rule\": "));
+        assertTrue(json, json.contains("\"rule\": \"AtomParselet \\\\d+(?:\\\\.\\\\d+)?\", \"probes\": "));
+        assertTrue(statistics.toText().contains("AtomParselet \\d+(?:\\.\\d+)?"));
+
+        parser.setStatistics(null);
+        statistics.reset();
+        grammar.parse(source);
+        assertTrue(statistics.snapshot().isEmpty());
+        assertEquals("[]", statistics.toJson());
+    }
+
+    private ParseStatistics.Entry entry(ParseStatistics statistics, String rulePrefix) {
+        return entry(statistics, rulePrefix, "");
+    }
+
+    private ParseStatistics.Entry entry(ParseStatistics statistics, String rulePrefix, String ruleText) {
+        for (ParseStatistics.Entry entry : statistics.snapshot())
+            if (entry.getRule().startsWith(rulePrefix) && entry.getRule().contains(ruleText)) return entry;
+        throw new AssertionError("No statistics for " + rulePrefix + " in\n" + statistics.toText());
+    }
+
+    @Test
+    public void incrementalParsing() {
+        String source = "SELECT campo1, abc(campo3, campo4) FROM tabela WHERE (campo = 2) AND id = 35.89 ORDER BY campo2";
+        Parser parser = new Parser();
+        configureParser(parser);
+        IncrementalParser incremental = new IncrementalParser(parser, source);
+
+        // "(campo = 2)" -> "(campo = 25)"
+        int offset = source.indexOf("2)") + 1;
+        Expression expression = incremental.edit(offset, 0, "5");
+        assertEquals(parse(incremental.getSource().toString()).toString(), expression.toString());
+        assertEquals(" (campo = 25) AND id = 35.89", incremental.getLastParsed().getSpan().getText());
+
+        // "campo4" -> "campo"
+        offset = incremental.getSource().toString().indexOf("campo4") + 5;
+        expression = incremental.edit(offset, 1, "");
+        assertEquals(parse(incremental.getSource().toString()).toString(), expression.toString());
+
+        // "35.89" -> "35.89 + 1"
+        offset = incremental.getSource().toString().indexOf("35.89") + 5;
+        expression = incremental.edit(offset, 0, " + 1");
+        assertEquals(parse(incremental.getSource().toString()).toString(), expression.toString());
+
+        String expected = "SELECT campo1, abc(campo3, campo) FROM tabela WHERE (campo = 25) AND id = 35.89 + 1 ORDER BY campo2";
+        assertEquals(expected, incremental.getSource().toString());
+        assertEquals(expected, new SqlPrinter().print(expression));
+    }
+
+    @Test
+    public void incrementalParsingOfUnparseableEdits() {
+        String source = "SELECT campo FROM tabela WHERE (campo = 2)";
+        Parser parser = new Parser();
+        configureParser(parser);
+        IncrementalParser incremental = new IncrementalParser(parser, source);
+
+        try {
+            incremental.edit(source.indexOf("= 2"), 1, "");
+            fail("Expected not able to parse \"(campo  2)\"");
+        } catch (UnparseableException e) {
+            assertEquals(null, incremental.getExpression());
+        }
+
+        Expression expression = incremental.edit(source.indexOf("= 2"), 0, ">");
+        assertEquals(parse("SELECT campo FROM tabela WHERE (campo > 2)").toString(), expression.toString());
+    }
+
+    @Test
+    public void packedIntoArena() {
+        String source = "SELECT campo1, abc(campo3, campo4) FROM tabela WHERE campo = 2 ORDER BY campo2";
+
+        ExpressionArena arena = ExpressionArena.of(source, parse(source));
+        assertEquals(parse(source).toString(), arena.root().toString());
+        assertEquals(source, new SqlPrinter().print(arena.root()));
+
+        int identifiers = 0;
+        int identifier = arena.typeId("IDENTIFIER");
+        for (int node = 0; node < arena.size(); node++)
+            if (arena.typeOf(node) == identifier) identifiers++;
+        assertEquals(6, identifiers);
+
+        Expression root = parse(source);
+        assertEquals(root.getChildCount(), arena.childCountOf(0));
+        assertEquals(root.getChild(2).getType(), arena.typeName(arena.typeOf(arena.childOf(0, 2))));
+        assertEquals(arena.childOf(0, 1), arena.nextSiblingOf(arena.firstChildOf(0)));
+    }
+
     @Test
     public void exceptions() {
         try {
@@ -209,6 +518,15 @@ public class ParserTest {
         } catch (Exception e) {
             // success
         }
+
+        try {
+            parse("SELECT campo\n\n   FROM\n  )");
+            fail("Expected not able to parse \")\" after FROM");
+        } catch (UnparseableException e) {
+            assertEquals(24, e.getOffset());
+            assertEquals(4, e.getLine());
+            assertEquals(3, e.getColumn());
+        }
     }
 
     // == Helpers ==
@@ -229,7 +547,7 @@ public class ParserTest {
         return expression;
     }
 
-    private void configureParser(Parser parser) {
+    public static void configureParser(Parser parser) {
         // PRECEDENCE (What to parse first. Higher numbers means more precedence)
         int x = 1;
         final int ATOM = x++;
@@ -1,11 +1,11 @@
 package tekai.sql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static tekai.Expression.e;
-import static tekai.Helpers.word;
+import static tekai.standard.CommonTransformation.from;
 
-import java.util.Iterator;
-import java.util.List;
+import java.io.StringWriter;
 
 import org.junit.Test;
 
@@ -14,10 +14,12 @@ import tekai.Expression;
 public class PrinterTest {
 
     ParserTest p;
+    SqlPrinter printer;
     String sql;
 
     public PrinterTest(){
         p = new ParserTest();
+        printer = new SqlPrinter();
         sql = "";
     }
 
@@ -137,86 +139,29 @@ public class PrinterTest {
         assertEquals(sql, print(p.parse(sql)));
     }
 
+    @Test
+    public void printToWriter() throws Exception {
+        sql = "SELECT campo1 || 'string' || abc(campo3, campo4) FROM tabela WHERE (campo = 2)";
+        StringWriter out = new StringWriter();
+        printer.print(p.parse(sql), out);
+        assertEquals(sql, out.toString());
+    }
+
+    @Test
+    public void copyingSource() {
+        sql = "SELECT nvl(campo, 0),  campo2 FROM tabela WHERE (campo = 2) ORDER BY campo2";
+        Expression expression = from("nvl", "FUNCTION").toValue("ISNULL").applyOn(p.parse(sql));
+
+        SqlPrinter copying = new SqlPrinter();
+        copying.setCopyingSource(true);
+
+        assertEquals("SELECT ISNULL(campo, 0),  campo2 FROM tabela WHERE (campo = 2) ORDER BY campo2", copying.print(expression));
+        assertEquals(printer.print(expression), copying.print(expression));
+        assertNull(expression.getSpan());
+        assertEquals(" (campo = 2)", expression.getChild(2).getChild(0).getSpan().getText());
+    }
+
     private String print(Expression e) {
-        if (e.isType("SQL")) {
-            return printChildren(e.getChildren(), "");
-        } else if (e.isType("SELECT")) {
-            if (e.getChild(0).isType("DISTINCT")) {
-                return e.printValue() + print(e.getChildren().remove(0)) + printChildren(e.getChildren());
-            } else {
-                return e.printValue() + printChildren(e.getChildren());
-            }
-        } else if(e.isType("FROM")) {
-            return e.printValue() + printFrom(e.getChildren());
-        } else if (e.isType("GROUP") || e.isType("ORDER")) {
-            return e.printValue() + printChildren(e.getChildren());
-        } else if (e.isType("LIMIT")
-                        || e.isType("OFFSET")
-                        || e.isType("CASE")
-                        || e.isType("WHEN")
-                        || e.isType("WHERE")
-                        || e.isType("THEN")
-                        || e.isType("ELSE")
-                        || e.isType("NOT")
-                        || e.isType("JOIN")
-                        || e.isType("ON")) {
-            return e.printValue() + printChildren(e.getChildren(), "");
-        } else if (e.isType("CONCAT")) {
-            return printChildren(e.getChildren(), e.printValue());
-        } else if (e.isType("PARENTHESIS")) {
-            return e.printValue() + printChildren(e.getChildren()) + ")";
-        } else if (e.isType("FUNCTION")) {
-            StringBuilder result = new StringBuilder();
-            String separator = (e.hasValue(word("POSITION")) ? " IN" : ",");
-            result.append(e.printValue()).append("(");
-            result.append(printChildren(e.getChildren(), separator));
-            return result.append(")").toString();
-        } else if (e.isType("ARITHMETIC")
-                        || e.isType("BOOLEAN")
-                        || e.isType("LIKE")
-                        || e.isType("ALIAS")
-                        || e.isType("OPERATOR")
-                        || e.isType("IS")) {
-            return print(e.getChild(0)) + e.printValue() + print(e.getChild(1));
-        } else if (e.isType("ORDERING")) {
-            return print(e.getChild(0)) + e.printValue();
-        } else {
-            return e.printValue();
-        }
-    }
-
-     protected String printFrom(List<Expression> e) {
-        StringBuilder result = new StringBuilder();
-
-        Iterator<Expression> iterator = e.iterator();
-        if (iterator.hasNext())
-            result.append(print(iterator.next()));
-
-        while (iterator.hasNext()) {
-            Expression exp = iterator.next();
-            result.append(exp.isType("JOIN") ? "" : ",");
-            result.append(print(exp));
-        }
-
-        return result.toString();
-    }
-
-    private String printChildren(List<Expression> e) {
-        return printChildren(e, ",");
-    }
-
-    private String printChildren(List<Expression> e, String separator) {
-        StringBuilder result = new StringBuilder();
-
-        Iterator<Expression> iterator = e.iterator();
-        if (iterator.hasNext())
-            result.append(print(iterator.next()));
-
-        while (iterator.hasNext()) {
-            result.append(separator);
-            result.append(print(iterator.next()));
-        }
-
-        return result.toString();
+        return printer.print(e);
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package tekai.sql;
+
+import static tekai.Helpers.word;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import tekai.Expression;
+import tekai.Separator;
+import tekai.StreamingPrinter;
+
+/**
+ * Prints back the trees made by the grammar in {@link ParserTest}.
+ */
+public class SqlPrinter extends StreamingPrinter {
+
+    private static final Separator IN = Separator.of(" IN");
+
+    @Override
+    protected void render(Expression e, Appendable out) throws IOException {
+        if (e.isType("SQL")) {
+            printChildren(e.getChildren(), Separator.NOTHING, out);
+        } else if (e.isType("SELECT")) {
+            printValue(e, out);
+            if (e.getChild(0).isType("DISTINCT")) {
+                print(e.getChild(0), out);
+                printChildren(e.getChildren().subList(1, e.getChildCount()), out);
+            } else {
+                printChildren(e.getChildren(), out);
+            }
+        } else if(e.isType("FROM")) {
+            printValue(e, out);
+            printFrom(e.getChildren(), out);
+        } else if (e.isType("GROUP") || e.isType("ORDER")) {
+            printValue(e, out);
+            printChildren(e.getChildren(), out);
+        } else if (e.isType("LIMIT")
+                        || e.isType("OFFSET")
+                        || e.isType("CASE")
+                        || e.isType("WHEN")
+                        || e.isType("WHERE")
+                        || e.isType("THEN")
+                        || e.isType("ELSE")
+                        || e.isType("NOT")
+                        || e.isType("JOIN")
+                        || e.isType("ON")) {
+            printValue(e, out);
+            printChildren(e.getChildren(), Separator.NOTHING, out);
+        } else if (e.isType("CONCAT")) {
+            printChildren(e.getChildren(), e.printValue(), out);
+        } else if (e.isType("PARENTHESIS")) {
+            printValue(e, out);
+            printChildren(e.getChildren(), out);
+            out.append(")");
+        } else if (e.isType("FUNCTION")) {
+            Separator separator = (e.hasValue(word("POSITION")) ? IN : Separator.COMMA);
+            printValue(e, out);
+            out.append("(");
+            printChildren(e.getChildren(), separator, out);
+            out.append(")");
+        } else if (e.isType("ARITHMETIC")
+                        || e.isType("BOOLEAN")
+                        || e.isType("LIKE")
+                        || e.isType("ALIAS")
+                        || e.isType("OPERATOR")
+                        || e.isType("IS")) {
+            print(e.getChild(0), out);
+            printValue(e, out);
+            print(e.getChild(1), out);
+        } else if (e.isType("ORDERING")) {
+            print(e.getChild(0), out);
+            printValue(e, out);
+        } else {
+            printValue(e, out);
+        }
+    }
+
+    protected void printFrom(List<Expression> e, Appendable out) throws IOException {
+        Iterator<Expression> iterator = e.iterator();
+        if (iterator.hasNext())
+            print(iterator.next(), out);
+
+        while (iterator.hasNext()) {
+            Expression exp = iterator.next();
+            out.append(exp.isType("JOIN") ? "" : ",");
+            print(exp, out);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package tekai.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tekai.standard.CommonTransformation.from;
+
+import org.junit.Test;
+
+import tekai.Parser;
+import tekai.TranslationCache;
+import tekai.UnparseableException;
+import tekai.standard.MultiTransformation;
+
+public class TranslationCacheTest {
+
+    @Test
+    public void translationCache() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        TranslationCache cache = new TranslationCache(parser.freeze(), from("getdate", "FUNCTION").toValue("SYSDATE"), new SqlPrinter(), 1);
+
+        assertEquals("SELECT SYSDATE(), campo FROM tabela", cache.translate("SELECT getdate(), campo FROM tabela"));
+        assertEquals("SELECT SYSDATE(), campo FROM tabela", cache.translate(new StringBuilder("SELECT getdate(), campo FROM tabela")));
+        assertEquals("SELECT campo FROM tabela", cache.translate("SELECT campo FROM tabela"));
+        assertEquals("SELECT SYSDATE(), campo FROM tabela", cache.translate("SELECT getdate(), campo FROM tabela"));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.25, cache.getHitRatio(), 0.0001);
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.getMemorySize() > 2 * 2 * "SELECT SYSDATE(), campo FROM tabela".length());
+
+        try {
+            cache.translate("SELECT campo FROM");
+            fail("Expected not able to parse \"SELECT campo FROM\"");
+        } catch (UnparseableException e) {
+            assertEquals(1, cache.getSize());
+        }
+    }
+
+    @Test
+    public void translationTemplates() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        MultiTransformation transformation = new MultiTransformation();
+        transformation.register(from("SUBSTRING", "FUNCTION").toValue("SUBSTR").toParamOrder(1, 3, 2));
+        transformation.register(from("0", "NUMBER").toValue("1"));
+
+        TranslationCache expected = new TranslationCache(parser.freeze(), transformation, new SqlPrinter(), 100);
+        TranslationCache cache = new TranslationCache(parser.freeze(), transformation, new SqlPrinter(), 100);
+        cache.setLiteralTypes("NUMBER", "STRING");
+
+        String[] statements = {
+            "SELECT SUBSTRING(nome, 2, 5) FROM tabela WHERE nome = 'a'",
+            "SELECT SUBSTRING(nome, 2, 5) FROM tabela WHERE nome = 'b c'",
+            "SELECT SUBSTRING(nome, 2, 5) FROM tabela WHERE nome = 'b c'",
+            "SELECT campo FROM tabela WHERE id = 7",
+            "SELECT campo FROM tabela WHERE id = 0"
+        };
+        for (String statement : statements)
+            assertEquals(expected.translate(statement), cache.translate(statement));
+
+        // the second statement filled the template of the first one; numbers are not
+        // literals of the templates, as a rule looks at their values
+        assertEquals(1, cache.getTemplateHits());
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.getTemplateCount());
+    }
+
+    @Test
+    public void translationTemplatesOfValuesThatChangeTheTranslation() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        MultiTransformation transformation = new MultiTransformation();
+        transformation.register(from("0", "NUMBER").toValue("1"));
+
+        TranslationCache cache = new TranslationCache(parser.freeze(), transformation, new SqlPrinter(), 100);
+        cache.setLiteralTypes("NUMBER");
+
+        assertEquals("SELECT campo FROM tabela WHERE id = 7", cache.translate("SELECT campo FROM tabela WHERE id = 7"));
+        assertEquals("SELECT campo FROM tabela WHERE id = 1", cache.translate("SELECT campo FROM tabela WHERE id = 0"));
+        assertEquals(0, cache.getTemplateHits());
+    }
+
+    @Test
+    public void templatesAreEvictedApart() {
+        Parser parser = new Parser();
+        ParserTest.configureParser(parser);
+        TranslationCache cache = new TranslationCache(parser.freeze(), null, new SqlPrinter(), 1);
+        cache.setLiteralTypes("NUMBER");
+
+        cache.translate("SELECT campo FROM tabela WHERE id = 1");
+        cache.translate("SELECT campo FROM tabela WHERE id = 2");
+        cache.translate("SELECT nome FROM tabela WHERE id = 3");
+
+        assertEquals(1, cache.getTemplateHits());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1, cache.getTemplateEvictions());
+        assertEquals(1, cache.getTemplateCount());
+        assertTrue(cache.toString(), cache.toString().contains(", evictions: 2, template evictions: 1,"));
+
+        cache.clear();
+        assertEquals(0, cache.getTemplateEvictions());
+    }
+}